@@ -0,0 +1,97 @@
+package com.example.idp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Separate Hikari pools per workload, so one kind of traffic cannot starve another:
+ * <ul>
+ *   <li>auth: interactive requests ({@code spring.datasource.hikari.*})</li>
+ *   <li>reporting: {@link ReplicaRead} admin and reporting transactions when no replica is
+ *       available ({@code spring.datasource.reporting.hikari.*})</li>
+ *   <li>batch: background writers such as the audit flush, purges and last-login flush,
+ *       injected explicitly as {@code batchDataSource} ({@code spring.datasource.batch.hikari.*})</li>
+ *   <li>audit: synchronous audit inserts, injected explicitly as {@code auditDataSource}
+ *       ({@code spring.datasource.audit.hikari.*}); its short connection timeout bounds how long
+ *       a request waits before the event is deferred to the batch writer</li>
+ * </ul>
+ * All four point at the primary database; each has its own size, timeouts and
+ * hikaricp metrics (tagged with the pool name). The application DataSource hands out
+ * lazy connections so {@link WorkloadRoutingDataSource} can pick the pool once the
+ * transaction is known. See {@link ReplicaDataSourceConfig} for the optional replica.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource authDataSource(DataSourceProperties properties) {
+        return pool(properties, "auth");
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.reporting.hikari")
+    public HikariDataSource reportingDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = pool(properties, "reporting");
+        dataSource.setMaximumPoolSize(4);
+        dataSource.setConnectionTimeout(10000);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.batch.hikari")
+    public HikariDataSource batchDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = pool(properties, "batch");
+        dataSource.setMaximumPoolSize(4);
+        dataSource.setConnectionTimeout(5000);
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.audit.hikari")
+    public HikariDataSource auditDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = pool(properties, "audit");
+        dataSource.setMaximumPoolSize(4);
+        dataSource.setConnectionTimeout(250);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("authDataSource") DataSource auth,
+            @Qualifier("reportingDataSource") DataSource reporting,
+            @Qualifier("replicaDataSource") ObjectProvider<DataSource> replica,
+            ObjectProvider<ReplicaLagMonitor> lagMonitor) {
+        return new LazyConnectionDataSourceProxy(new WorkloadRoutingDataSource(
+            auth, reporting, replica.getIfAvailable(), lagMonitor.getIfAvailable()));
+    }
+
+    // Hibernate otherwise keeps one connection per session, which with open-in-view is
+    // the whole request: later transactions would reuse whichever pool served the first
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+            PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    // Defaults set here are overridden by the pool's configuration properties
+    private static HikariDataSource pool(DataSourceProperties properties, String name) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(name);
+        return dataSource;
+    }
+}
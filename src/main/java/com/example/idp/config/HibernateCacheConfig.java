@@ -0,0 +1,26 @@
+package com.example.idp.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class HibernateCacheConfig {
+
+    // Second-level and query cache on a local Caffeine JCache; regions, sizes and
+    // statistics are in hibernate-cache.conf. spring.jpa.properties.* still take precedence.
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheProperties() {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+            properties.putIfAbsent(AvailableSettings.USE_QUERY_CACHE, "true");
+            properties.putIfAbsent(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.putIfAbsent(ConfigSettings.PROVIDER, CaffeineCachingProvider.class.getName());
+            properties.putIfAbsent(ConfigSettings.CONFIG_URI, "hibernate-cache.conf");
+            properties.putIfAbsent(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.idp.config;
+
+import com.example.idp.service.JwtService;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Authenticates API calls from an IdP access token in the Authorization header.
+ * The principal is the user id and the {@code roles} claim becomes ROLE_ authorities.
+ * An invalid token leaves the request anonymous, so public endpoints still work and
+ * protected ones get the chain's 401.
+ *
+ * Not a bean on purpose: Boot would also register it as a servlet filter.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtService jwtService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+            try {
+                Claims claims = jwtService.validateAccessToken(authorization.substring(BEARER_PREFIX.length()));
+                UsernamePasswordAuthenticationToken authentication = UsernamePasswordAuthenticationToken.authenticated(
+                    Long.parseLong(claims.getSubject()), null, authorities(claims));
+                authentication.setDetails(claims);
+
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(authentication);
+                SecurityContextHolder.setContext(context);
+            } catch (Exception e) {
+                log.debug("Rejected bearer token for {}: {}", request.getRequestURI(), e.getMessage());
+                SecurityContextHolder.clearContext();
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private static List<GrantedAuthority> authorities(Claims claims) {
+        Object roles = claims.get("roles");
+        if (!(roles instanceof List<?> list)) {
+            return Collections.emptyList();
+        }
+        return list.stream()
+            .map(role -> (GrantedAuthority) new SimpleGrantedAuthority("ROLE_" + role))
+            .toList();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.idp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Read replica for {@link ReplicaRead} transactions, enabled by setting
+ * {@code spring.datasource.replica.url}; pool settings under
+ * {@code spring.datasource.replica.hikari.*}. While it lags or is unreachable
+ * those transactions use the reporting pool on the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(
+            DataSourceProperties properties,
+            @Value("${spring.datasource.replica.url}") String url,
+            @Value("${spring.datasource.replica.username:}") String username,
+            @Value("${spring.datasource.replica.password:}") String password) {
+        // Credentials default to the primary's
+        HikariDataSource dataSource = DataSourceBuilder.create()
+            .type(HikariDataSource.class)
+            .driverClassName(properties.determineDriverClassName())
+            .url(url)
+            .username(username.isEmpty() ? properties.determineUsername() : username)
+            .password(password.isEmpty() ? properties.determinePassword() : password)
+            .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        // Fail over to the primary quickly when the replica stops answering
+        dataSource.setConnectionTimeout(2000);
+        return dataSource;
+    }
+
+    // The primary's WAL position is read through the reporting pool, off the auth path
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Qualifier("reportingDataSource") DataSource primary,
+            @Qualifier("replicaDataSource") DataSource replica,
+            @Value("${spring.datasource.replica.max-lag-ms:1000}") long maxLagMs,
+            @Value("${spring.datasource.replica.check-interval-ms:1000}") long checkIntervalMs,
+            MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(primary, replica, maxLagMs, checkIntervalMs, meterRegistry);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.idp.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether the read replica is fresh enough to serve reads. Each check
+ * takes the primary's current WAL position; a replica that has replayed up to it
+ * has no lag, otherwise the lag is the age of the last transaction it replayed.
+ * A failed check, or lag over the limit, sends reads back to the primary (reporting
+ * pool) until a later check passes.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    // A server that is not in recovery (e.g. a local stand-in) never lags
+    private static final String REPLICA_LAG_SQL = """
+        SELECT CASE
+            WHEN NOT pg_is_in_recovery() THEN 0
+            WHEN pg_wal_lsn_diff(?::pg_lsn, pg_last_wal_replay_lsn()) <= 0 THEN 0
+            ELSE (EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint
+        END
+        """;
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMs;
+    private final long checkIntervalMs;
+
+    private volatile boolean replicaUsable;
+    private volatile long lagMs = -1;
+    private ScheduledExecutorService checker;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, long maxLagMs, long checkIntervalMs,
+                             MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMs = maxLagMs;
+        this.checkIntervalMs = checkIntervalMs;
+
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagMs)
+            .description("Replication lag of the read replica, -1 when unknown")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        Gauge.builder("datasource.replica.usable", this, monitor -> monitor.replicaUsable ? 1 : 0)
+            .description("Whether @ReplicaRead transactions are routed to the replica")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        check();
+        checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-lag-check");
+            t.setDaemon(true);
+            return t;
+        });
+        checker.scheduleWithFixedDelay(this::check, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checker.shutdownNow();
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    void check() {
+        boolean usable;
+        try {
+            String primaryLsn = primary.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+            Long lag = replica.queryForObject(REPLICA_LAG_SQL, Long.class, primaryLsn);
+            lagMs = lag != null ? lag : -1;
+            usable = lag != null && lag <= maxLagMs;
+        } catch (Exception e) {
+            log.debug("Replica lag check failed: {}", e.getMessage());
+            lagMs = -1;
+            usable = false;
+        }
+
+        if (usable != replicaUsable) {
+            if (usable) {
+                log.info("Read replica available, routing @ReplicaRead transactions to it");
+            } else {
+                log.warn("Read replica unavailable or lagging ({} ms), routing reads to the primary", lagMs);
+            }
+        }
+        replicaUsable = usable;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.idp.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks read-only work that tolerates replication lag. Only read-only transactions
+ * started inside a marked method or class leave the auth pool: they go to the
+ * replica while it is fresh, else to the reporting pool. Everything unmarked,
+ * including Spring Data's own read-only repository transactions, reads the primary.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaRead {
+}
@@ -0,0 +1,29 @@
+package com.example.idp.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scopes {@link ReplicaRead} to the marked call. Ordered ahead of the transaction
+ * interceptor, so the mark is in place before the transaction's first statement
+ * makes {@link WorkloadRoutingDataSource} pick a pool.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReplicaReadAspect {
+
+    @Around("@annotation(com.example.idp.config.ReplicaRead) || @within(com.example.idp.config.ReplicaRead)")
+    public Object markReplicaRead(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean previous = WorkloadRoutingDataSource.markReplicaRead();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            WorkloadRoutingDataSource.restoreReplicaRead(previous);
+        }
+    }
+}
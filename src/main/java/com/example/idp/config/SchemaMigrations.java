@@ -0,0 +1,100 @@
+package com.example.idp.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One-off schema changes that Hibernate's ddl-auto cannot make, such as moving
+ * data out of a column before dropping it. Each {@code db/migration/V<n>__<name>.sql}
+ * script runs once, in version order, after Hibernate has updated the schema; applied
+ * versions are recorded in {@code schema_migrations}. All pending scripts run in one
+ * transaction under an advisory lock, so nodes starting together apply them once and
+ * a failed script leaves nothing half done (the node then fails to start).
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class SchemaMigrations {
+
+    static final String LOCATION = "classpath*:db/migration/V*__*.sql";
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    // Arbitrary, but fixed: every node must take the same lock
+    private static final long LOCK_KEY = 0x1d9_5c4e_3a11L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public SchemaMigrations(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @PostConstruct
+    public void migrate() {
+        List<Script> scripts = scripts();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", LOCK_KEY);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_migrations ("
+                + "version INTEGER PRIMARY KEY, description VARCHAR(255) NOT NULL, "
+                + "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            List<Integer> applied = jdbcTemplate.queryForList("SELECT version FROM schema_migrations", Integer.class);
+            for (Script script : scripts) {
+                if (applied.contains(script.version())) {
+                    continue;
+                }
+                log.info("Applying schema migration V{}: {}", script.version(), script.description());
+                // Executed as one statement, so DO blocks need no special splitting
+                jdbcTemplate.execute(script.sql());
+                jdbcTemplate.update("INSERT INTO schema_migrations (version, description) VALUES (?, ?)",
+                    script.version(), script.description());
+            }
+        });
+    }
+
+    private static List<Script> scripts() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(LOCATION);
+            return Arrays.stream(resources)
+                .map(SchemaMigrations::script)
+                .sorted(Comparator.comparingInt(Script::version))
+                .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list schema migrations", e);
+        }
+    }
+
+    private static Script script(Resource resource) {
+        Matcher name = SCRIPT_NAME.matcher(resource.getFilename());
+        if (!name.matches()) {
+            throw new IllegalStateException("Unexpected schema migration name: " + resource.getFilename());
+        }
+        try {
+            String sql = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+            return new Script(Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '), sql);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read schema migration " + resource.getFilename(), e);
+        }
+    }
+
+    private record Script(int version, String description, String sql) {
+    }
+}
@@ -1,16 +1,22 @@
 package com.example.idp.config;
 
+import com.example.idp.oauth2.CookieAuthorizationRequestRepository;
 import com.example.idp.oauth2.CustomOAuth2UserService;
 import com.example.idp.oauth2.CustomOAuth2User;
+import com.example.idp.service.JwtService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -24,23 +30,54 @@ import java.util.List;
 public class SecurityConfig {
     
     private final CustomOAuth2UserService customOAuth2UserService;
+    private final CookieAuthorizationRequestRepository cookieAuthorizationRequestRepository;
+    private final JwtService jwtService;
     
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
     
+    // REST API: no HttpSession is ever created or read, so any node can serve any call;
+    // callers authenticate with an IdP access token on every request
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    @Order(1)
+    public SecurityFilterChain apiFilterChain(HttpSecurity http) throws Exception {
         http
+            .securityMatcher("/api/**")
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .csrf(csrf -> csrf.disable())
-            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED))
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .requestCache(cache -> cache.disable())
+            .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+            .addFilterBefore(new JwtAuthenticationFilter(jwtService), UsernamePasswordAuthenticationFilter.class)
             .authorizeHttpRequests(authz -> authz
                 // Public endpoints
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/oauth2/**").permitAll()
                 .requestMatchers("/api/oauth/clients/**").permitAll() // Allow OAuth client management
+                
+                // Admin endpoints, bearer token must carry the ADMIN role
+                .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                
+                .anyRequest().authenticated()
+            );
+        
+        return http.build();
+    }
+    
+    @Bean
+    @Order(2)
+    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+        http
+            .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+            .csrf(csrf -> csrf.disable())
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED))
+            .authorizeHttpRequests(authz -> authz
+                // Public endpoints
+                .requestMatchers("/oauth2/token").permitAll()
+                .requestMatchers("/oauth2/userinfo").permitAll() // Bearer token checked by the endpoint
+                .requestMatchers("/internal/oauth2/**").permitAll() // Peer calls, authenticated by shared secret
                 .requestMatchers("/.well-known/**").permitAll()
                 .requestMatchers("/health").permitAll()
                 .requestMatchers("/actuator/health").permitAll()
@@ -50,13 +87,14 @@ public class SecurityConfig {
                 .requestMatchers("/*.js").permitAll() // Allow JS files
                 .requestMatchers("/*.css").permitAll() // Allow CSS files
                 
-                // Admin endpoints (if we add them later)
-                .requestMatchers("/api/admin/**").hasRole("ADMIN")
-                
                 // All other requests need authentication
                 .anyRequest().authenticated()
             )
             .oauth2Login(oauth2 -> oauth2
+                // Pending login requests live in an encrypted cookie, not the session
+                .authorizationEndpoint(authorization -> authorization
+                    .authorizationRequestRepository(cookieAuthorizationRequestRepository)
+                )
                 .userInfoEndpoint(userInfo -> userInfo
                     .userService(customOAuth2UserService)
                 )
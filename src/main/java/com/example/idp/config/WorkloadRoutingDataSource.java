@@ -0,0 +1,65 @@
+package com.example.idp.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the pool when a lazy connection is first used. Read-only transactions
+ * inside {@link ReplicaRead} work go to the replica while {@link ReplicaLagMonitor}
+ * considers it fresh, otherwise to the reporting pool; everything else uses the
+ * auth pool.
+ *
+ * Being read-only is not enough: Spring Data runs plain repository reads in
+ * read-only transactions of its own, and those back caches and sign-in flows that
+ * must see writes committed a moment ago. Lag-tolerant reads are marked instead.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String AUTH = "auth";
+    private static final String REPORTING = "reporting";
+    private static final String REPLICA = "replica";
+
+    // Set by ReplicaReadAspect for the duration of a @ReplicaRead call
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public WorkloadRoutingDataSource(DataSource auth, DataSource reporting, DataSource replica,
+                                     ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(AUTH, auth);
+        targets.put(REPORTING, reporting);
+        if (replica != null) {
+            targets.put(REPLICA, replica);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(auth);
+        afterPropertiesSet();
+    }
+
+    static boolean markReplicaRead() {
+        boolean previous = Boolean.TRUE.equals(REPLICA_READ.get());
+        REPLICA_READ.set(Boolean.TRUE);
+        return previous;
+    }
+
+    static void restoreReplicaRead(boolean previous) {
+        if (!previous) {
+            REPLICA_READ.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || !Boolean.TRUE.equals(REPLICA_READ.get())) {
+            return AUTH;
+        }
+        return lagMonitor != null && lagMonitor.isReplicaUsable() ? REPLICA : REPORTING;
+    }
+}
@@ -10,6 +10,7 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -131,18 +132,10 @@ public class AuthController {
     @PostMapping("/logout")
     public ResponseEntity<ApiResponse<String>> logout(
             @RequestBody(required = false) RefreshTokenRequest request,
-            HttpServletRequest httpRequest) {
+            @AuthenticationPrincipal Long userId) {
         
         try {
-            // Extract user ID from access token if present
-            String authHeader = httpRequest.getHeader("Authorization");
-            Long userId = null;
-            
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                // This would require JWT validation - simplified for now
-                // In production, you'd validate the JWT and extract user ID
-            }
-            
+            // userId is set by JwtAuthenticationFilter when a valid access token was sent
             if (request != null && request.getRefreshToken() != null) {
                 authenticationService.logout(request.getRefreshToken(), userId);
             }
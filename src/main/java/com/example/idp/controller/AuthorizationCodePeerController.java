@@ -0,0 +1,30 @@
+package com.example.idp.controller;
+
+import com.example.idp.oauth2.AuthorizationCode;
+import com.example.idp.oauth2.ClusteredAuthorizationCodeStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "oauth2.authorization-code.store", havingValue = "clustered")
+public class AuthorizationCodePeerController {
+
+    private final ClusteredAuthorizationCodeStore codeStore;
+
+    // Node-to-node only: redeems a code this node issued on behalf of a peer
+    @PostMapping(ClusteredAuthorizationCodeStore.PEER_REDEEM_PATH)
+    public ResponseEntity<AuthorizationCode> redeem(
+            @RequestParam String code,
+            @RequestHeader(value = ClusteredAuthorizationCodeStore.PEER_SECRET_HEADER, required = false) String secret) {
+
+        if (!codeStore.isPeerSecretValid(secret)) {
+            return ResponseEntity.status(403).build();
+        }
+        return codeStore.redeemForPeer(code, secret)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
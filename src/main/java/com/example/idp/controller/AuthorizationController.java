@@ -0,0 +1,77 @@
+package com.example.idp.controller;
+
+import com.example.idp.dto.ApiResponse;
+import com.example.idp.entity.User;
+import com.example.idp.oauth2.CustomOAuth2User;
+import com.example.idp.service.AuthorizationCodeService;
+import com.example.idp.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+
+@RestController
+@RequestMapping("/oauth2")
+@RequiredArgsConstructor
+@Slf4j
+public class AuthorizationController {
+
+    private final AuthorizationCodeService authorizationCodeService;
+    private final UserService userService;
+
+    // Requires an authenticated IdP session; Spring Security sends anonymous users to login first
+    @GetMapping("/authorize")
+    public ResponseEntity<?> authorize(
+            @RequestParam("response_type") String responseType,
+            @RequestParam("client_id") String clientId,
+            @RequestParam(value = "redirect_uri", required = false) String redirectUri,
+            @RequestParam(value = "scope", required = false) String scope,
+            @RequestParam(value = "state", required = false) String state,
+            @RequestParam(value = "code_challenge", required = false) String codeChallenge,
+            @RequestParam(value = "code_challenge_method", required = false) String codeChallengeMethod,
+            Authentication authentication) {
+
+        Long userId = resolveUserId(authentication);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(ApiResponse.error("Authentication required"));
+        }
+
+        AuthorizationCodeService.AuthorizationResult result = authorizationCodeService.authorize(
+            userId, responseType, clientId, redirectUri, scope, codeChallenge, codeChallengeMethod);
+
+        if (!result.canRedirect()) {
+            log.warn("Rejected authorization request from client {}: {}", clientId, result.getError());
+            return ResponseEntity.badRequest()
+                .body(ApiResponse.error("Authorization failed", result.getError()));
+        }
+
+        UriComponentsBuilder location = UriComponentsBuilder.fromUriString(result.getRedirectUri());
+        if (result.isSuccess()) {
+            location.queryParam("code", result.getCode());
+        } else {
+            location.queryParam("error", result.getError());
+        }
+        if (state != null) {
+            location.queryParam("state", state);
+        }
+
+        return ResponseEntity.status(HttpStatus.FOUND)
+            .header(HttpHeaders.LOCATION, location.encode().build().toUriString())
+            .build();
+    }
+
+    private Long resolveUserId(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return null;
+        }
+        if (authentication.getPrincipal() instanceof CustomOAuth2User oauth2User) {
+            return oauth2User.getUserId();
+        }
+        return userService.findByEmail(authentication.getName()).map(User::getId).orElse(null);
+    }
+}
@@ -1,6 +1,6 @@
 package com.example.idp.controller;
 
-import com.example.idp.entity.User;
+import com.example.idp.repository.LoginCredentials;
 import com.example.idp.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -38,7 +38,7 @@ public class DashboardController {
                 !authentication.getName().equals("anonymousUser")) {
                 
                 String email = authentication.getName();
-                User user = userService.findByEmail(email).orElse(null);
+                LoginCredentials user = userService.findLoginCredentials(email).orElse(null);
                 
                 if (user != null) {
                     model.addAttribute("user", user);
@@ -1,10 +1,19 @@
 package com.example.idp.controller;
 
+import com.example.idp.service.DiscoveryService;
 import com.example.idp.service.JwtService;
+import com.example.idp.util.HttpUtils;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.util.Map;
 
 @RestController
@@ -14,10 +23,44 @@ import java.util.Map;
 public class JwksController {
     
     private final JwtService jwtService;
+    private final DiscoveryService discoveryService;
+    
+    @Value("${oidc.discovery.max-age:3600}")
+    private long discoveryMaxAge;
     
     @GetMapping("/jwks.json")
     public ResponseEntity<Map<String, Object>> getJwks() {
         Map<String, Object> jwks = jwtService.getJwksResponse();
         return ResponseEntity.ok(jwks);
     }
+    
+    // Served from pre-built bytes; gzip is picked per request, never compressed on the fly
+    @GetMapping("/openid-configuration")
+    public ResponseEntity<byte[]> getOpenIdConfiguration(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
+        DiscoveryService.Document document = discoveryService.getDocument();
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(discoveryMaxAge)).cachePublic();
+        boolean gzip = HttpUtils.acceptsEncoding(acceptEncoding, "gzip");
+        String etag = gzip ? document.gzipEtag() : document.etag();
+        
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .build();
+        }
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(etag)
+            .cacheControl(cacheControl)
+            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(document.gzip());
+        }
+        return response.body(document.json());
+    }
 }
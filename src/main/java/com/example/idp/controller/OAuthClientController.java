@@ -1,13 +1,18 @@
 package com.example.idp.controller;
 
+import com.example.idp.config.ReplicaRead;
 import com.example.idp.dto.ApiResponse;
 import com.example.idp.entity.OAuthClient;
 import com.example.idp.repository.OAuthClientRepository;
+import com.example.idp.service.ClientChangedEvent;
+import com.example.idp.service.DeletionReaper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -24,6 +29,8 @@ public class OAuthClientController {
 
     private final OAuthClientRepository oauthClientRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DeletionReaper deletionReaper;
 
     @PostMapping
     public ResponseEntity<ApiResponse<CreateOAuthClientResponse>> createClient(@Valid @RequestBody CreateOAuthClientRequest request) {
@@ -43,11 +50,15 @@ public class OAuthClientController {
                 .clientSecretHash(passwordEncoder.encode(clientSecret))
                 .clientName(request.getClientName())
                 .redirectUris(List.of("http://localhost:3000/auth/callback")) // Default redirect URI
-                .scopes(List.of("read", "write", "profile")) // Default scopes
+                .scopes(OAuthClient.DEFAULT_SCOPES)
+                .claimProfile(request.getClaimProfile()) // Null keeps the full claim set
+                .publicClient(Boolean.TRUE.equals(request.getPublicClient()))
                 .isActive(true)
                 .build();
 
             OAuthClient savedClient = oauthClientRepository.save(client);
+            // A lookup of this id before it existed may have cached the default profile
+            eventPublisher.publishEvent(new ClientChangedEvent(savedClient.getClientId()));
             
             // Return the plain client secret only once during creation
             CreateOAuthClientResponse response = new CreateOAuthClientResponse();
@@ -57,6 +68,8 @@ public class OAuthClientController {
             response.setClientName(savedClient.getClientName());
             response.setRedirectUris(savedClient.getRedirectUris());
             response.setScopes(savedClient.getScopes());
+            response.setClaimProfile(savedClient.getClaimProfile());
+            response.setPublicClient(savedClient.getPublicClient());
             response.setIsActive(savedClient.getIsActive());
             response.setCreatedAt(savedClient.getCreatedAt());
             
@@ -70,10 +83,13 @@ public class OAuthClientController {
         }
     }
 
+    // Admin listings tolerate replica lag
     @GetMapping
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public ResponseEntity<ApiResponse<List<OAuthClient>>> getAllClients() {
         try {
-            List<OAuthClient> clients = oauthClientRepository.findAll();
+            List<OAuthClient> clients = oauthClientRepository.findByDeletedAtIsNull();
             
             // Hide client secrets in response
             clients.forEach(client -> client.setClientSecretHash("[HIDDEN]"));
@@ -87,9 +103,11 @@ public class OAuthClientController {
     }
 
     @GetMapping("/{clientId}")
+    @ReplicaRead
+    @Transactional(readOnly = true)
     public ResponseEntity<ApiResponse<OAuthClient>> getClient(@PathVariable String clientId) {
         try {
-            Optional<OAuthClient> client = oauthClientRepository.findByClientId(clientId);
+            Optional<OAuthClient> client = oauthClientRepository.findByClientIdAndDeletedAtIsNull(clientId);
             
             if (client.isEmpty()) {
                 return ResponseEntity.notFound().build();
@@ -112,7 +130,7 @@ public class OAuthClientController {
             @PathVariable String clientId,
             @Valid @RequestBody UpdateOAuthClientRequest request) {
         try {
-            Optional<OAuthClient> existingClient = oauthClientRepository.findByClientId(clientId);
+            Optional<OAuthClient> existingClient = oauthClientRepository.findByClientIdAndDeletedAtIsNull(clientId);
             
             if (existingClient.isEmpty()) {
                 return ResponseEntity.notFound().build();
@@ -122,6 +140,8 @@ public class OAuthClientController {
             client.setClientName(request.getClientName());
             client.setRedirectUris(request.getRedirectUris());
             client.setScopes(request.getScopes());
+            client.setClaimProfile(request.getClaimProfile());
+            client.setPublicClient(Boolean.TRUE.equals(request.getPublicClient()));
             client.setIsActive(request.getIsActive());
             
             // Update client secret if provided
@@ -130,6 +150,7 @@ public class OAuthClientController {
             }
             
             OAuthClient updatedClient = oauthClientRepository.save(client);
+            eventPublisher.publishEvent(new ClientChangedEvent(clientId));
             updatedClient.setClientSecretHash("[HIDDEN]");
             
             log.info("OAuth client updated successfully: {}", clientId);
@@ -142,16 +163,18 @@ public class OAuthClientController {
         }
     }
 
+    // Deactivates the client at once; its refresh tokens and the row itself are
+    // removed in the background by DeletionReaper
     @DeleteMapping("/{clientId}")
+    @Transactional
     public ResponseEntity<ApiResponse<Void>> deleteClient(@PathVariable String clientId) {
         try {
-            Optional<OAuthClient> client = oauthClientRepository.findByClientId(clientId);
-            
-            if (client.isEmpty()) {
+            if (oauthClientRepository.markDeleted(clientId, LocalDateTime.now()) == 0) {
                 return ResponseEntity.notFound().build();
             }
             
-            oauthClientRepository.delete(client.get());
+            eventPublisher.publishEvent(new ClientChangedEvent(clientId));
+            deletionReaper.reapAfterCommit();
             
             log.info("OAuth client deleted successfully: {}", clientId);
             return ResponseEntity.ok(ApiResponse.success("OAuth client deleted successfully", null));
@@ -207,6 +230,8 @@ public class OAuthClientController {
         private String clientName;
         private List<String> redirectUris;
         private List<String> scopes;
+        private String claimProfile;
+        private Boolean publicClient;
         private Boolean isActive;
         private LocalDateTime createdAt;
 
@@ -229,6 +254,12 @@ public class OAuthClientController {
         public List<String> getScopes() { return scopes; }
         public void setScopes(List<String> scopes) { this.scopes = scopes; }
         
+        public String getClaimProfile() { return claimProfile; }
+        public void setClaimProfile(String claimProfile) { this.claimProfile = claimProfile; }
+        
+        public Boolean getPublicClient() { return publicClient; }
+        public void setPublicClient(Boolean publicClient) { this.publicClient = publicClient; }
+        
         public Boolean getIsActive() { return isActive; }
         public void setIsActive(Boolean isActive) { this.isActive = isActive; }
         
@@ -239,10 +270,18 @@ public class OAuthClientController {
     // Request DTOs
     public static class CreateOAuthClientRequest {
         private String clientName;
+        private String claimProfile;
+        private Boolean publicClient;
 
         // Getters and setters
         public String getClientName() { return clientName; }
         public void setClientName(String clientName) { this.clientName = clientName; }
+        
+        public String getClaimProfile() { return claimProfile; }
+        public void setClaimProfile(String claimProfile) { this.claimProfile = claimProfile; }
+        
+        public Boolean getPublicClient() { return publicClient; }
+        public void setPublicClient(Boolean publicClient) { this.publicClient = publicClient; }
     }
 
     public static class UpdateOAuthClientRequest {
@@ -250,6 +289,8 @@ public class OAuthClientController {
         private String clientName;
         private List<String> redirectUris;
         private List<String> scopes;
+        private String claimProfile;
+        private Boolean publicClient;
         private Boolean isActive;
 
         // Getters and setters
@@ -265,6 +306,12 @@ public class OAuthClientController {
         public List<String> getScopes() { return scopes; }
         public void setScopes(List<String> scopes) { this.scopes = scopes; }
         
+        public String getClaimProfile() { return claimProfile; }
+        public void setClaimProfile(String claimProfile) { this.claimProfile = claimProfile; }
+        
+        public Boolean getPublicClient() { return publicClient; }
+        public void setPublicClient(Boolean publicClient) { this.publicClient = publicClient; }
+        
         public Boolean getIsActive() { return isActive; }
         public void setIsActive(Boolean isActive) { this.isActive = isActive; }
     }
@@ -0,0 +1,100 @@
+package com.example.idp.controller;
+
+import com.example.idp.service.AuthorizationCodeService;
+import com.example.idp.service.TokenExchangeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/oauth2")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+public class TokenController {
+
+    private final TokenExchangeService tokenExchangeService;
+    private final AuthorizationCodeService authorizationCodeService;
+
+    // Token endpoint responses follow RFC 6749 rather than the ApiResponse envelope
+    @PostMapping(value = "/token", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<Map<String, Object>> token(
+            @RequestParam("grant_type") String grantType,
+            @RequestParam(value = "client_id", required = false) String clientId,
+            @RequestParam(value = "client_secret", required = false) String clientSecret,
+            @RequestParam(value = "code", required = false) String code,
+            @RequestParam(value = "redirect_uri", required = false) String redirectUri,
+            @RequestParam(value = "code_verifier", required = false) String codeVerifier,
+            @RequestParam(value = "subject_token", required = false) String subjectToken,
+            @RequestParam(value = "subject_token_type", required = false) String subjectTokenType,
+            @RequestParam(value = "audience", required = false) String audience,
+            @RequestParam(value = "scope", required = false) String scope) {
+
+        try {
+            if (AuthorizationCodeService.GRANT_TYPE.equals(grantType)) {
+                AuthorizationCodeService.TokenResult result = authorizationCodeService.redeem(
+                    code, clientId, clientSecret, redirectUri, codeVerifier);
+
+                if (!result.isSuccess()) {
+                    return error(result.getError(), result.getErrorDescription());
+                }
+
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("access_token", result.getAccessToken());
+                body.put("token_type", "Bearer");
+                body.put("expires_in", result.getExpiresIn());
+                if (!result.getScope().isEmpty()) {
+                    body.put("scope", result.getScope());
+                }
+                return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(body);
+            }
+
+            if (TokenExchangeService.GRANT_TYPE.equals(grantType)) {
+                TokenExchangeService.TokenExchangeResult result = tokenExchangeService.exchange(
+                    subjectToken, subjectTokenType, clientId, clientSecret, audience, scope);
+
+                if (!result.isSuccess()) {
+                    return error(result.getError(), result.getErrorDescription());
+                }
+
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("access_token", result.getAccessToken());
+                body.put("issued_token_type", TokenExchangeService.ACCESS_TOKEN_TYPE);
+                body.put("token_type", "Bearer");
+                body.put("expires_in", result.getExpiresIn());
+                if (!result.getScope().isEmpty()) {
+                    body.put("scope", result.getScope());
+                }
+                return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .body(body);
+            }
+
+            return error("unsupported_grant_type", "Unsupported grant_type: " + grantType);
+
+        } catch (Exception e) {
+            log.error("Unexpected error at token endpoint", e);
+            return ResponseEntity.internalServerError()
+                .body(Map.of("error", "server_error"));
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> error(String error, String description) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", error);
+        body.put("error_description", description);
+        HttpStatus status = "invalid_client".equals(error) ? HttpStatus.UNAUTHORIZED : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status)
+            .cacheControl(CacheControl.noStore())
+            .body(body);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.idp.controller;
+
+import com.example.idp.service.JwtService;
+import com.example.idp.service.UserInfoService;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/oauth2")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*", allowedHeaders = "*", exposedHeaders = "ETag")
+public class UserInfoController {
+
+    private final JwtService jwtService;
+    private final UserInfoService userInfoService;
+
+    // Clients revalidate with If-None-Match and get a bodiless 304 while the claims are unchanged
+    @GetMapping("/userinfo")
+    public ResponseEntity<byte[]> userInfo(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            WebRequest request) {
+
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return unauthorized("invalid_request");
+        }
+
+        Long userId;
+        try {
+            Claims claims = jwtService.validateAccessToken(authorization.substring(7));
+            userId = Long.parseLong(claims.getSubject());
+        } catch (Exception e) {
+            return unauthorized("invalid_token");
+        }
+
+        try {
+            Optional<UserInfoService.Snapshot> snapshot = userInfoService.getSnapshot(userId);
+            if (snapshot.isEmpty()) {
+                return unauthorized("invalid_token");
+            }
+
+            CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+            if (request.checkNotModified(snapshot.get().etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.get().etag())
+                    .cacheControl(cacheControl)
+                    .build();
+            }
+
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(snapshot.get().etag())
+                .cacheControl(cacheControl)
+                .body(snapshot.get().body());
+
+        } catch (Exception e) {
+            log.error("Failed to build userinfo for user {}", userId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private ResponseEntity<byte[]> unauthorized(String error) {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+            .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"" + error + "\"")
+            .build();
+    }
+}
@@ -10,7 +10,9 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "login_attempts")
+@Table(name = "login_attempts", indexes = {
+    @Index(name = "idx_login_attempts_attempted_at", columnList = "attempted_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,10 +1,17 @@
 package com.example.idp.entity;
 
+import com.example.idp.util.BitmaskRegistry;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -14,13 +21,20 @@ import java.util.Set;
 import java.util.HashSet;
 
 @Entity
-@Table(name = "oauth_clients")
+@Table(name = "oauth_clients", indexes = {
+    @Index(name = "idx_oauth_clients_deleted_at", columnList = "deleted_at")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "oauth-clients")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class OAuthClient {
     
+    // Granted to clients registered through the API
+    public static final List<String> DEFAULT_SCOPES = List.of("read", "write", "profile");
+    
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -35,15 +49,27 @@ public class OAuthClient {
     private String clientName;
     
     @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "oauth-client-redirect-uris")
     @CollectionTable(name = "client_redirect_uris", joinColumns = @JoinColumn(name = "client_id"))
     @Column(name = "redirect_uri")
     private List<String> redirectUris;
     
     @ElementCollection
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "oauth-client-scopes")
     @CollectionTable(name = "client_scopes", joinColumns = @JoinColumn(name = "client_id"))
     @Column(name = "scope")
     private List<String> scopes;
     
+    // Public clients (SPAs, native apps) hold no secret and redeem codes with PKCE
+    // alone; anything else must authenticate at the token endpoint
+    @Column(name = "public_client")
+    @Builder.Default
+    private Boolean publicClient = false;
+    
+    // Claims in this client's access tokens (see ClaimProfile); null keeps all of them
+    @Column(name = "claim_profile")
+    private String claimProfile;
+    
     @Column(name = "is_active")
     @Builder.Default
     private Boolean isActive = true;
@@ -56,16 +82,38 @@ public class OAuthClient {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
-    @OneToMany(mappedBy = "client", cascade = CascadeType.ALL)
+    // Set when the client is deleted; the row and its tokens are removed later by DeletionReaper
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
+    // No cascade: tokens are removed in bulk by DeletionReaper, never loaded through here
+    @OneToMany(mappedBy = "client")
     @Builder.Default
     private Set<RefreshToken> refreshTokens = new HashSet<>();
     
-    // Helper methods
-    public boolean isRedirectUriValid(String redirectUri) {
-        return redirectUris != null && redirectUris.contains(redirectUri);
+    // Scope bitmask (see BitmaskRegistry.SCOPES), built on the first check and reset
+    // whenever the scopes are replaced. Null means not built yet or registry overflow.
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Long scopeMask;
+    
+    public void setScopes(List<String> scopes) {
+        this.scopes = scopes;
+        this.scopeMask = null;
     }
     
+    // Helper methods
     public boolean hasScopeAccess(String scope) {
-        return scopes != null && scopes.contains(scope);
+        Long mask = scopeMask;
+        if (mask == null) {
+            mask = BitmaskRegistry.SCOPES.maskOf(scopes);
+            if (mask == null) {
+                return scopes != null && scopes.contains(scope);
+            }
+            scopeMask = mask;
+        }
+        return BitmaskRegistry.SCOPES.contains(mask, scope);
     }
 }
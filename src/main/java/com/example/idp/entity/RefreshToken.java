@@ -10,7 +10,12 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens", indexes = {
+    @Index(name = "idx_refresh_tokens_user_id", columnList = "user_id"),
+    @Index(name = "idx_refresh_tokens_client_id", columnList = "client_id"),
+    @Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at"),
+    @Index(name = "idx_refresh_tokens_revoked_created_at", columnList = "is_revoked, created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
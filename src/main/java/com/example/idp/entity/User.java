@@ -1,7 +1,12 @@
 package com.example.idp.entity;
 
+import com.example.idp.util.BitmaskRegistry;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -9,12 +14,16 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Collections;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+    @Index(name = "idx_users_deleted_at", columnList = "deleted_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -53,12 +62,6 @@ public class User {
     @Column(name = "password_reset_expires_at")
     private LocalDateTime passwordResetExpiresAt;
     
-    @Column(name = "linkedin_id", unique = true)
-    private String linkedinId;
-    
-    @Column(name = "google_id", unique = true)
-    private String googleId;
-    
     @Column(name = "profile_picture_url", length = 500)
     private String profilePictureUrl;
     
@@ -74,17 +77,31 @@ public class User {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
-    @Column(name = "last_login_at")
+    // Only set on insert; later logins are written by LastLoginRecorder
+    @Column(name = "last_login_at", updatable = false)
     private LocalDateTime lastLoginAt;
     
+    // Set when the user is deleted; the row and its dependents are removed later by DeletionReaper
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @Builder.Default
     private Set<UserRole> roles = new HashSet<>();
     
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
+    // No cascade: tokens are removed in bulk by DeletionReaper, never loaded through here
+    @OneToMany(mappedBy = "user")
     @Builder.Default
     private Set<RefreshToken> refreshTokens = new HashSet<>();
     
+    // Role bitmask (see BitmaskRegistry.ROLES): built on the first check, then kept
+    // in step by addRole/removeRole. Null means not built yet or registry overflow.
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Long roleMask;
+    
     // Make sure collections are immutable when accessed
     public Set<UserRole> getRoles() {
         return Collections.unmodifiableSet(roles);
@@ -94,15 +111,22 @@ public class User {
         return Collections.unmodifiableSet(refreshTokens);
     }
     
+    // Active and not marked deleted; a deleted user stays in the table until DeletionReaper runs
+    public boolean canSignIn() {
+        return Boolean.TRUE.equals(isActive) && deletedAt == null;
+    }
+    
     // Helper methods for bidirectional relationship management
     public void addRole(UserRole role) {
         roles.add(role);
         role.setUser(this);
+        roleMask = BitmaskRegistry.ROLES.with(roleMask, role.getRole());
     }
     
     public void removeRole(UserRole role) {
         roles.remove(role);
         role.setUser(null);
+        roleMask = BitmaskRegistry.ROLES.without(roleMask, role.getRole());
     }
     
     public String getFullName() {
@@ -115,8 +139,18 @@ public class User {
     }
     
     public boolean hasRole(String roleName) {
-        // Create a defensive copy to avoid ConcurrentModificationException
-        return new HashSet<>(roles).stream()
-                .anyMatch(role -> role.getRole().equals(roleName));
+        Long mask = roleMask;
+        if (mask == null) {
+            List<String> names = new ArrayList<>(roles.size());
+            for (UserRole role : roles) {
+                names.add(role.getRole());
+            }
+            mask = BitmaskRegistry.ROLES.maskOf(names);
+            if (mask == null) {
+                return names.contains(roleName);
+            }
+            roleMask = mask;
+        }
+        return BitmaskRegistry.ROLES.contains(mask, roleName);
     }
 }
@@ -0,0 +1,59 @@
+package com.example.idp.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.ToString;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Link between a local user and an account at an upstream identity provider.
+ * Keyed by (provider, subject), so a federated login is one primary-key probe
+ * whatever the provider.
+ */
+@Entity
+@Table(name = "user_identities", indexes = {
+    @Index(name = "idx_user_identities_user_id", columnList = "user_id")
+})
+@IdClass(UserIdentity.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserIdentity {
+
+    @Id
+    @Column(length = 50)
+    private String provider;
+
+    @Id
+    @Column(length = 255)
+    private String subject;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private User user;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String provider;
+        private String subject;
+    }
+}
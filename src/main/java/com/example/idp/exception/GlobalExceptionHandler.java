@@ -1,7 +1,9 @@
 package com.example.idp.exception;
 
 import com.example.idp.dto.ApiResponse;
+import com.example.idp.upstream.UpstreamUnavailableException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -146,6 +148,19 @@ public class GlobalExceptionHandler {
             .body(ApiResponse.error("Not Found", message));
     }
 
+    /**
+     * Handle upstream identity providers refused locally (circuit open, bulkhead full)
+     */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<ApiResponse<Object>> handleUpstreamUnavailable(UpstreamUnavailableException ex) {
+        
+        log.warn("Upstream provider unavailable: {}", ex.getMessage());
+        
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(ApiResponse.error("Provider Unavailable", ex.getMessage()));
+    }
+
     /**
      * Handle custom business logic exceptions
      */
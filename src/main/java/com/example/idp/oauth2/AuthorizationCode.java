@@ -0,0 +1,19 @@
+package com.example.idp.oauth2;
+
+/**
+ * Everything the token endpoint needs to redeem an authorization code, held in
+ * memory only. The code value itself is the key in {@link AuthorizationCodeStore}.
+ */
+public record AuthorizationCode(
+        String clientId,
+        Long userId,
+        String redirectUri,
+        String scope,
+        String codeChallenge,
+        String codeChallengeMethod,
+        long expiresAt) {
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.idp.oauth2;
+
+import java.util.Optional;
+
+public interface AuthorizationCodeStore {
+
+    /**
+     * Stores the grant and returns the opaque code value handed to the client.
+     */
+    String save(AuthorizationCode code);
+
+    /**
+     * Atomically removes and returns the grant. A code can be redeemed at most
+     * once; expired or unknown codes yield an empty result.
+     */
+    Optional<AuthorizationCode> redeem(String code);
+}
@@ -0,0 +1,151 @@
+package com.example.idp.oauth2;
+
+import com.example.idp.entity.User;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Which user claims go into a client's access tokens, opted into per client with
+ * its {@code claim_profile}: a space-separated subset of
+ * <ul>
+ *   <li>{@code email}: email, email_verified</li>
+ *   <li>{@code profile}: name</li>
+ *   <li>{@code roles}: roles</li>
+ * </ul>
+ * sub, client_id and the registered claims (iss, aud, iat, exp) are always present.
+ * A client registered without a profile, or with none of these names, keeps the
+ * full legacy claim set.
+ *
+ * There are only eight profiles; each one is built once with its JSON key
+ * fragments pre-escaped, so rendering a payload is a single pass of appends.
+ */
+public final class ClaimProfile {
+
+    public static final String SCOPE_EMAIL = "email";
+    public static final String SCOPE_PROFILE = "profile";
+    public static final String SCOPE_ROLES = "roles";
+
+    private static final int EMAIL = 1;
+    private static final int PROFILE = 2;
+    private static final int ROLES = 4;
+
+    private static final ClaimProfile[] PROFILES = new ClaimProfile[8];
+
+    static {
+        for (int bits = 0; bits < PROFILES.length; bits++) {
+            PROFILES[bits] = new ClaimProfile(bits);
+        }
+    }
+
+    public static final ClaimProfile FULL = PROFILES[EMAIL | PROFILE | ROLES];
+
+    private final boolean includesEmail;
+    private final boolean includesName;
+    private final boolean includesRoles;
+    private final String name;
+
+    private ClaimProfile(int bits) {
+        this.includesEmail = (bits & EMAIL) != 0;
+        this.includesName = (bits & PROFILE) != 0;
+        this.includesRoles = (bits & ROLES) != 0;
+        this.name = (includesEmail ? "email " : "") + (includesName ? "profile " : "") + (includesRoles ? "roles" : "");
+    }
+
+    public static ClaimProfile of(String claimProfile) {
+        if (claimProfile == null || claimProfile.isBlank()) {
+            return FULL;
+        }
+        return forScopes(Arrays.asList(claimProfile.trim().split("\\s+")));
+    }
+
+    public static ClaimProfile forScopes(Collection<String> scopes) {
+        if (scopes == null) {
+            return FULL;
+        }
+        int bits = (scopes.contains(SCOPE_EMAIL) ? EMAIL : 0)
+            | (scopes.contains(SCOPE_PROFILE) ? PROFILE : 0)
+            | (scopes.contains(SCOPE_ROLES) ? ROLES : 0);
+        return bits == 0 ? FULL : PROFILES[bits];
+    }
+
+    public boolean includesRoles() {
+        return includesRoles;
+    }
+
+    public String getName() {
+        return name.trim();
+    }
+
+    /**
+     * Renders the JWT payload for an access token. Roles are only read when the
+     * profile includes them, so callers can skip the lookup entirely otherwise.
+     * A null scope leaves the claim out.
+     */
+    public String render(User user, String clientId, List<String> roles, String scope,
+                         String issuer, String audience, long issuedAt, long expiresAt) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"sub\":");
+        appendString(json, user.getId().toString());
+        json.append(",\"client_id\":");
+        appendString(json, clientId);
+        if (includesEmail) {
+            json.append(",\"email\":");
+            appendString(json, user.getEmail());
+            json.append(",\"email_verified\":").append(Boolean.TRUE.equals(user.getEmailVerified()));
+        }
+        if (includesName) {
+            json.append(",\"name\":");
+            appendString(json, user.getFullName());
+        }
+        if (includesRoles) {
+            json.append(",\"roles\":[");
+            for (int i = 0; i < roles.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                appendString(json, roles.get(i));
+            }
+            json.append(']');
+        }
+        if (scope != null) {
+            json.append(",\"scope\":");
+            appendString(json, scope);
+        }
+        json.append(",\"iss\":");
+        appendString(json, issuer);
+        json.append(",\"aud\":");
+        appendString(json, audience);
+        json.append(",\"iat\":").append(issuedAt);
+        json.append(",\"exp\":").append(expiresAt);
+        json.append(",\"token_type\":\"access\"}");
+        return json.toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
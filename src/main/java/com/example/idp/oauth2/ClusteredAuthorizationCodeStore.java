@@ -0,0 +1,126 @@
+package com.example.idp.oauth2;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Multi-node variant of the code store. Every code is prefixed with the id of the
+ * node that issued it and lives only in that node's memory; a token request that
+ * lands on another node is forwarded to the owner, which performs the atomic
+ * removal. Single use therefore holds cluster-wide without a shared table.
+ *
+ * Enabled with {@code oauth2.authorization-code.store=clustered}; peers are listed
+ * as {@code node-id=base-url} pairs in {@code oauth2.authorization-code.peers}.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "oauth2.authorization-code.store", havingValue = "clustered")
+@Slf4j
+public class ClusteredAuthorizationCodeStore implements AuthorizationCodeStore {
+
+    public static final String PEER_SECRET_HEADER = "X-Peer-Secret";
+    public static final String PEER_REDEEM_PATH = "/internal/oauth2/codes/redeem";
+
+    private final InMemoryAuthorizationCodeStore localStore;
+    private final RestTemplate restTemplate;
+    private final String nodeId;
+    private final String peerSecret;
+    private final Map<String, String> peers = new HashMap<>();
+
+    public ClusteredAuthorizationCodeStore(
+            InMemoryAuthorizationCodeStore localStore,
+            RestTemplate restTemplate,
+            @Value("${oauth2.authorization-code.node-id}") String nodeId,
+            @Value("${oauth2.authorization-code.peer-secret}") String peerSecret,
+            @Value("${oauth2.authorization-code.peers:}") String peers) {
+        this.localStore = localStore;
+        this.restTemplate = restTemplate;
+        this.nodeId = nodeId;
+        this.peerSecret = peerSecret;
+
+        for (String peer : peers.split(",")) {
+            String[] parts = peer.trim().split("=", 2);
+            if (parts.length == 2) {
+                this.peers.put(parts[0].trim(), parts[1].trim());
+            }
+        }
+        log.info("Clustered authorization code store on node {} with {} peer(s)", nodeId, this.peers.size());
+    }
+
+    @Override
+    public String save(AuthorizationCode code) {
+        return localStore.save(nodeId + "." + localStore.newCode(), code);
+    }
+
+    @Override
+    public Optional<AuthorizationCode> redeem(String code) {
+        if (code == null) {
+            return Optional.empty();
+        }
+        int dot = code.indexOf('.');
+        String owner = dot > 0 ? code.substring(0, dot) : nodeId;
+        if (owner.equals(nodeId)) {
+            return localStore.redeem(code);
+        }
+
+        String peerUrl = peers.get(owner);
+        if (peerUrl == null) {
+            log.warn("Authorization code issued by unknown node: {}", owner);
+            return Optional.empty();
+        }
+        return redeemOnPeer(peerUrl, code);
+    }
+
+    /**
+     * Redeems a code forwarded by another node. Only codes owned by this node are honoured.
+     */
+    public Optional<AuthorizationCode> redeemForPeer(String code, String secret) {
+        if (!isPeerSecretValid(secret) || code == null || !code.startsWith(nodeId + ".")) {
+            return Optional.empty();
+        }
+        return localStore.redeem(code);
+    }
+
+    public boolean isPeerSecretValid(String secret) {
+        return secret != null && MessageDigest.isEqual(
+            secret.getBytes(StandardCharsets.UTF_8), peerSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Optional<AuthorizationCode> redeemOnPeer(String peerUrl, String code) {
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+            headers.set(PEER_SECRET_HEADER, peerSecret);
+
+            MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
+            body.add("code", code);
+
+            ResponseEntity<AuthorizationCode> response = restTemplate.postForEntity(
+                peerUrl + PEER_REDEEM_PATH,
+                new HttpEntity<>(body, headers),
+                AuthorizationCode.class
+            );
+            return Optional.ofNullable(response.getBody());
+
+        } catch (HttpClientErrorException.NotFound e) {
+            return Optional.empty();
+        } catch (Exception e) {
+            log.error("Failed to redeem authorization code on peer {}", peerUrl, e);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.idp.oauth2;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.oauth2.client.web.AuthorizationRequestRepository;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the pending OAuth2 login request in a short-lived cookie instead of the
+ * HttpSession, so the provider callback can land on any node. The cookie is
+ * AES-GCM encrypted and authenticated with a key derived from
+ * {@code oauth2.login.cookie-secret}; every node must share that secret.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CookieAuthorizationRequestRepository implements AuthorizationRequestRepository<OAuth2AuthorizationRequest> {
+
+    static final String COOKIE_NAME = "oauth2_auth_request";
+
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final ObjectMapper objectMapper;
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${oauth2.login.cookie-secret:}")
+    private String cookieSecret;
+
+    @Value("${oauth2.login.cookie-max-age:180}")
+    private long maxAgeSeconds;
+
+    private SecretKeySpec key;
+
+    @PostConstruct
+    public void init() throws GeneralSecurityException {
+        byte[] secret;
+        if (cookieSecret.isBlank()) {
+            // Works on a single node only; callbacks routed to another node will fail
+            log.warn("oauth2.login.cookie-secret is not set; using a random per-node key");
+            secret = new byte[32];
+            random.nextBytes(secret);
+        } else {
+            secret = cookieSecret.getBytes(StandardCharsets.UTF_8);
+        }
+        key = new SecretKeySpec(MessageDigest.getInstance("SHA-256").digest(secret), "AES");
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest loadAuthorizationRequest(HttpServletRequest request) {
+        Cookie cookie = findCookie(request);
+        if (cookie == null) {
+            return null;
+        }
+
+        StoredRequest stored = decrypt(cookie.getValue());
+        if (stored == null || stored.expiresAt() < System.currentTimeMillis()) {
+            return null;
+        }
+        String state = request.getParameter("state");
+        if (state != null && !state.equals(stored.state())) {
+            return null;
+        }
+
+        return OAuth2AuthorizationRequest.authorizationCode()
+            .authorizationUri(stored.authorizationUri())
+            .clientId(stored.clientId())
+            .redirectUri(stored.redirectUri())
+            .scopes(stored.scopes())
+            .state(stored.state())
+            .additionalParameters(stored.additionalParameters())
+            .attributes(stored.attributes())
+            .authorizationRequestUri(stored.authorizationRequestUri())
+            .build();
+    }
+
+    @Override
+    public void saveAuthorizationRequest(OAuth2AuthorizationRequest authorizationRequest,
+                                         HttpServletRequest request, HttpServletResponse response) {
+        if (authorizationRequest == null) {
+            writeCookie(request, response, "", Duration.ZERO);
+            return;
+        }
+
+        StoredRequest stored = new StoredRequest(
+            System.currentTimeMillis() + maxAgeSeconds * 1000,
+            authorizationRequest.getAuthorizationUri(),
+            authorizationRequest.getClientId(),
+            authorizationRequest.getRedirectUri(),
+            authorizationRequest.getScopes(),
+            authorizationRequest.getState(),
+            authorizationRequest.getAdditionalParameters(),
+            authorizationRequest.getAttributes(),
+            authorizationRequest.getAuthorizationRequestUri());
+        writeCookie(request, response, encrypt(stored), Duration.ofSeconds(maxAgeSeconds));
+    }
+
+    @Override
+    public OAuth2AuthorizationRequest removeAuthorizationRequest(HttpServletRequest request,
+                                                                 HttpServletResponse response) {
+        OAuth2AuthorizationRequest authorizationRequest = loadAuthorizationRequest(request);
+        if (findCookie(request) != null) {
+            writeCookie(request, response, "", Duration.ZERO);
+        }
+        return authorizationRequest;
+    }
+
+    private String encrypt(StoredRequest stored) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(COOKIE_NAME.getBytes(StandardCharsets.US_ASCII));
+            byte[] sealed = cipher.doFinal(objectMapper.writeValueAsBytes(stored));
+
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                ByteBuffer.allocate(iv.length + sealed.length).put(iv).put(sealed).array());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to encrypt authorization request", e);
+        }
+    }
+
+    private StoredRequest decrypt(String value) {
+        try {
+            byte[] raw = Base64.getUrlDecoder().decode(value);
+            if (raw.length <= IV_LENGTH) {
+                return null;
+            }
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, raw, 0, IV_LENGTH));
+            cipher.updateAAD(COOKIE_NAME.getBytes(StandardCharsets.US_ASCII));
+            byte[] plain = cipher.doFinal(raw, IV_LENGTH, raw.length - IV_LENGTH);
+            return objectMapper.readValue(plain, StoredRequest.class);
+        } catch (Exception e) {
+            // Tampered, truncated, or sealed with another key
+            log.warn("Rejected authorization request cookie: {}", e.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    private static Cookie findCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                return cookie;
+            }
+        }
+        return null;
+    }
+
+    private static void writeCookie(HttpServletRequest request, HttpServletResponse response,
+                                    String value, Duration maxAge) {
+        // Lax so the cookie comes back on the provider's top-level redirect
+        ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, value)
+            .path("/")
+            .httpOnly(true)
+            .secure(request.isSecure())
+            .sameSite("Lax")
+            .maxAge(maxAge)
+            .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    record StoredRequest(
+            long expiresAt,
+            String authorizationUri,
+            String clientId,
+            String redirectUri,
+            Set<String> scopes,
+            String state,
+            Map<String, Object> additionalParameters,
+            Map<String, Object> attributes,
+            String authorizationRequestUri) {}
+}
@@ -54,12 +54,9 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
         
         log.debug("Processing Google user - Email: {}, Name: {}, ID: {}", email, name, googleId);
         
-        // Create or update user in database
+        // Create or update user in database; this also records the login time
         User user = userService.registerGoogleOAuthUser(email, name, googleId, picture);
         
-        // Update last login
-        userService.updateLastLogin(user.getId());
-        
         // Return a custom OAuth2User that includes our database user
         return new CustomOAuth2User(oAuth2User, user);
     }
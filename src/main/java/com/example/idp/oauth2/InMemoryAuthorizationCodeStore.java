@@ -0,0 +1,149 @@
+package com.example.idp.oauth2;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authorization codes kept in a fixed number of shards, with expiry driven by a
+ * hashed timer wheel: each code is dropped into the slot of the tick at which it
+ * expires, and a single background tick sweeps one slot at a time. Redemption is
+ * a plain {@code remove}, so single use is guaranteed by the map itself.
+ */
+@Component
+@Slf4j
+public class InMemoryAuthorizationCodeStore implements AuthorizationCodeStore {
+
+    private static final int SHARD_COUNT = 16;
+    private static final int WHEEL_SIZE = 128;
+    private static final long TICK_MILLIS = 1000;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentHashMap<String, AuthorizationCode>[] shards = new ConcurrentHashMap[SHARD_COUNT];
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentLinkedQueue<String>[] wheel = new ConcurrentLinkedQueue[WHEEL_SIZE];
+
+    private ScheduledExecutorService ticker;
+    private long currentTick;
+
+    @Value("${oauth2.authorization-code.initial-shard-capacity:1024}")
+    private int initialShardCapacity;
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new ConcurrentHashMap<>(initialShardCapacity);
+        }
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        currentTick = System.currentTimeMillis() / TICK_MILLIS;
+
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "auth-code-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    @Override
+    public String save(AuthorizationCode code) {
+        return save(newCode(), code);
+    }
+
+    String save(String value, AuthorizationCode code) {
+        shard(value).put(value, code);
+        schedule(value, code.expiresAt());
+        return value;
+    }
+
+    @Override
+    public Optional<AuthorizationCode> redeem(String value) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        AuthorizationCode code = shard(value).remove(value);
+        if (code == null || code.isExpired(System.currentTimeMillis())) {
+            return Optional.empty();
+        }
+        return Optional.of(code);
+    }
+
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<String, AuthorizationCode> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    String newCode() {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private void schedule(String value, long expiresAt) {
+        // Round up so a slot is only swept once every code in it has expired
+        long expiryTick = (expiresAt + TICK_MILLIS - 1) / TICK_MILLIS;
+        wheel[(int) (expiryTick % WHEEL_SIZE)].add(value);
+    }
+
+    private void advance() {
+        try {
+            long now = System.currentTimeMillis();
+            long targetTick = now / TICK_MILLIS;
+            while (currentTick <= targetTick) {
+                sweep(wheel[(int) (currentTick % WHEEL_SIZE)], now);
+                currentTick++;
+            }
+        } catch (Exception e) {
+            log.error("Authorization code expiry sweep failed", e);
+        }
+    }
+
+    private void sweep(ConcurrentLinkedQueue<String> slot, long now) {
+        // Codes living longer than one wheel revolution are put back for the next pass
+        for (int pending = slot.size(); pending > 0; pending--) {
+            String value = slot.poll();
+            if (value == null) {
+                return;
+            }
+            ConcurrentHashMap<String, AuthorizationCode> shard = shard(value);
+            AuthorizationCode code = shard.get(value);
+            if (code == null) {
+                continue; // already redeemed
+            }
+            if (code.isExpired(now)) {
+                shard.remove(value, code);
+            } else {
+                slot.add(value);
+            }
+        }
+    }
+
+    private ConcurrentHashMap<String, AuthorizationCode> shard(String value) {
+        int h = value.hashCode();
+        return shards[(h ^ (h >>> 16)) & (SHARD_COUNT - 1)];
+    }
+}
@@ -0,0 +1,410 @@
+package com.example.idp.oauth2;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Immutable, precompiled form of a client's registered redirect URIs.
+ *
+ * Plain URIs go into a hash set and are matched exactly. Two kinds of patterns are
+ * compiled into a host/path trie:
+ * <ul>
+ *   <li>path prefixes, registered with a trailing {@code /*} (e.g. {@code https://app.example.com/cb/*})</li>
+ *   <li>any-port URIs, registered with {@code :*} or as an {@code http} loopback URI without
+ *       a port (RFC 8252), e.g. {@code http://127.0.0.1/callback}</li>
+ * </ul>
+ * Matching works on character offsets into the candidate string and does not allocate.
+ * Compiled matchers are cached per client by {@link RedirectUriMatcherCache}.
+ */
+public final class RedirectUriMatcher {
+
+    private static final int ANY_PORT = -2;
+    private static final int DEFAULT_PORT = -1;
+
+    private final LocalDateTime version;
+    private final Set<String> exactUris;
+    private final HostEntry[][] hostBuckets;
+    private final int bucketMask;
+
+    private RedirectUriMatcher(LocalDateTime version, Set<String> exactUris, List<HostEntry> hosts) {
+        this.version = version;
+        this.exactUris = exactUris;
+
+        int size = 1;
+        while (size < hosts.size()) {
+            size <<= 1;
+        }
+        List<List<HostEntry>> buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (HostEntry host : hosts) {
+            buckets.get(host.hostHash & (size - 1)).add(host);
+        }
+        this.hostBuckets = new HostEntry[size][];
+        for (int i = 0; i < size; i++) {
+            this.hostBuckets[i] = buckets.get(i).toArray(new HostEntry[0]);
+        }
+        this.bucketMask = hosts.isEmpty() ? -1 : size - 1;
+    }
+
+    public static RedirectUriMatcher compile(LocalDateTime version, Collection<String> redirectUris) {
+        Set<String> exact = new HashSet<>();
+        Map<String, HostBuilder> hosts = new LinkedHashMap<>();
+
+        if (redirectUris != null) {
+            for (String uri : redirectUris) {
+                if (uri == null || uri.isBlank()) {
+                    continue;
+                }
+                if (!compilePattern(uri.trim(), hosts)) {
+                    exact.add(uri.trim());
+                }
+            }
+        }
+
+        List<HostEntry> entries = new ArrayList<>(hosts.size());
+        for (HostBuilder builder : hosts.values()) {
+            entries.add(builder.build());
+        }
+        return new RedirectUriMatcher(version, Set.copyOf(exact), entries);
+    }
+
+    // updated_at of the client the matcher was compiled from
+    LocalDateTime version() {
+        return version;
+    }
+
+    public boolean matches(String uri) {
+        if (uri == null) {
+            return false;
+        }
+        if (exactUris.contains(uri)) {
+            return true;
+        }
+        return bucketMask >= 0 && matchesPattern(uri);
+    }
+
+    private boolean matchesPattern(String uri) {
+        int len = uri.length();
+        int schemeEnd = uri.indexOf("://");
+        if (schemeEnd <= 0) {
+            return false;
+        }
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < len) {
+            char c = uri.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            if (c == '@' || c == '\\') {
+                return false; // userinfo or backslash tricks never match a pattern
+            }
+            authorityEnd++;
+        }
+        if (uri.indexOf('#', authorityEnd) >= 0) {
+            return false;
+        }
+        int pathEnd = uri.indexOf('?', authorityEnd);
+        if (pathEnd < 0) {
+            pathEnd = len;
+        }
+
+        int hostEnd;
+        if (authorityStart < authorityEnd && uri.charAt(authorityStart) == '[') {
+            hostEnd = uri.indexOf(']', authorityStart);
+            if (hostEnd < 0 || hostEnd >= authorityEnd) {
+                return false;
+            }
+            hostEnd++;
+        } else {
+            hostEnd = authorityStart;
+            while (hostEnd < authorityEnd && uri.charAt(hostEnd) != ':') {
+                hostEnd++;
+            }
+        }
+        if (hostEnd == authorityStart) {
+            return false;
+        }
+
+        int port = DEFAULT_PORT;
+        if (hostEnd < authorityEnd) {
+            if (uri.charAt(hostEnd) != ':' || hostEnd + 1 == authorityEnd) {
+                return false;
+            }
+            port = 0;
+            for (int i = hostEnd + 1; i < authorityEnd; i++) {
+                char c = uri.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+                port = port * 10 + (c - '0');
+                if (port > 65535) {
+                    return false;
+                }
+            }
+        }
+
+        if (hasUnsafePath(uri, authorityEnd, pathEnd)) {
+            return false;
+        }
+
+        int hash = 0;
+        for (int i = authorityStart; i < hostEnd; i++) {
+            hash = 31 * hash + Character.toLowerCase(uri.charAt(i));
+        }
+        for (HostEntry host : hostBuckets[hash & bucketMask]) {
+            if (host.matchesAuthority(uri, schemeEnd, authorityStart, hostEnd, port)
+                    && host.root.matchesPath(uri, authorityEnd, pathEnd)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Dot segments and encoded separators could escape a registered path prefix
+    private static boolean hasUnsafePath(String uri, int start, int end) {
+        int segmentStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || uri.charAt(i) == '/') {
+                int segmentLength = i - segmentStart;
+                if ((segmentLength == 1 && uri.charAt(segmentStart) == '.')
+                        || (segmentLength == 2 && uri.charAt(segmentStart) == '.' && uri.charAt(segmentStart + 1) == '.')) {
+                    return true;
+                }
+                segmentStart = i + 1;
+            } else if (uri.charAt(i) == '%' && i + 2 < end) {
+                char a = uri.charAt(i + 1);
+                char b = Character.toLowerCase(uri.charAt(i + 2));
+                if (a == '2' && (b == 'e' || b == 'f')) {
+                    return true;
+                }
+                if (a == '5' && b == 'c') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean compilePattern(String uri, Map<String, HostBuilder> hosts) {
+        int schemeEnd = uri.indexOf("://");
+        if (schemeEnd <= 0 || uri.indexOf('?') >= 0 || uri.indexOf('#') >= 0 || uri.indexOf('@') >= 0) {
+            return false;
+        }
+        String scheme = uri.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = uri.indexOf('/', authorityStart);
+        if (authorityEnd < 0) {
+            authorityEnd = uri.length();
+        }
+        String authority = uri.substring(authorityStart, authorityEnd);
+        String path = uri.substring(authorityEnd);
+
+        String host;
+        String portSpec = null;
+        int portSeparator = authority.startsWith("[") ? authority.indexOf(':', authority.indexOf(']')) : authority.indexOf(':');
+        if (portSeparator >= 0) {
+            host = authority.substring(0, portSeparator);
+            portSpec = authority.substring(portSeparator + 1);
+        } else {
+            host = authority;
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.isEmpty()) {
+            return false;
+        }
+
+        boolean prefix = path.endsWith("/*");
+        boolean loopback = "http".equals(scheme)
+            && ("localhost".equals(host) || "127.0.0.1".equals(host) || "[::1]".equals(host));
+
+        int port;
+        if ("*".equals(portSpec)) {
+            port = ANY_PORT;
+        } else if (portSpec == null && loopback) {
+            port = ANY_PORT;
+        } else if (portSpec == null) {
+            port = defaultPort(scheme);
+        } else {
+            if (!prefix) {
+                return false; // concrete port and no wildcard: plain exact URI
+            }
+            try {
+                port = Integer.parseInt(portSpec);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        if (!prefix && port != ANY_PORT) {
+            return false;
+        }
+        if (prefix) {
+            path = path.substring(0, path.length() - 1); // keep the trailing '/'
+        }
+        if (path.indexOf('*') >= 0 || host.indexOf('*') >= 0) {
+            return false; // only trailing path and port wildcards are supported
+        }
+
+        String hostName = host;
+        int hostPort = port;
+        HostBuilder builder = hosts.computeIfAbsent(scheme + "://" + hostName + ":" + hostPort,
+            k -> new HostBuilder(scheme, hostName, hostPort));
+        builder.add(path, prefix);
+        return true;
+    }
+
+    private static int defaultPort(String scheme) {
+        return "https".equals(scheme) ? 443 : "http".equals(scheme) ? 80 : DEFAULT_PORT;
+    }
+
+    private static final class HostEntry {
+        private final String scheme;
+        private final String host;
+        private final int hostHash;
+        private final int port;
+        private final PathNode root;
+
+        private HostEntry(String scheme, String host, int port, PathNode root) {
+            this.scheme = scheme;
+            this.host = host;
+            this.hostHash = host.hashCode();
+            this.port = port;
+            this.root = root;
+        }
+
+        boolean matchesAuthority(String uri, int schemeEnd, int hostStart, int hostEnd, int candidatePort) {
+            if (schemeEnd != scheme.length() || !uri.regionMatches(true, 0, scheme, 0, schemeEnd)) {
+                return false;
+            }
+            if (hostEnd - hostStart != host.length() || !uri.regionMatches(true, hostStart, host, 0, host.length())) {
+                return false;
+            }
+            if (port == ANY_PORT) {
+                return true;
+            }
+            return port == (candidatePort == DEFAULT_PORT ? defaultPort(scheme) : candidatePort);
+        }
+    }
+
+    private static final class PathNode {
+        private static final PathNode[] NO_CHILDREN = new PathNode[0];
+
+        private final String segment;
+        private final boolean terminal;
+        private final boolean wildcard;
+        private final PathNode[] children;
+
+        private PathNode(String segment, boolean terminal, boolean wildcard, PathNode[] children) {
+            this.segment = segment;
+            this.terminal = terminal;
+            this.wildcard = wildcard;
+            this.children = children;
+        }
+
+        // The path "" and "/" both land on the root node
+        boolean matchesPath(String uri, int start, int end) {
+            PathNode node = this;
+            int pos = start;
+            if (pos < end) {
+                if (uri.charAt(pos) != '/') {
+                    return false;
+                }
+                pos++;
+            }
+            if (pos >= end && (start == end || !node.wildcard)) {
+                return node.terminal;
+            }
+            while (true) {
+                if (node.wildcard) {
+                    return true;
+                }
+                int segmentEnd = uri.indexOf('/', pos);
+                if (segmentEnd < 0 || segmentEnd > end) {
+                    segmentEnd = end;
+                }
+                PathNode child = node.child(uri, pos, segmentEnd);
+                if (child == null) {
+                    return false;
+                }
+                node = child;
+                if (segmentEnd >= end) {
+                    return node.terminal;
+                }
+                pos = segmentEnd + 1;
+            }
+        }
+
+        private PathNode child(String uri, int start, int end) {
+            int length = end - start;
+            for (PathNode child : children) {
+                if (child.segment.length() == length && uri.regionMatches(start, child.segment, 0, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class HostBuilder {
+        private final String scheme;
+        private final String host;
+        private final int port;
+        private final NodeBuilder root = new NodeBuilder("");
+
+        HostBuilder(String scheme, String host, int port) {
+            this.scheme = scheme;
+            this.host = host;
+            this.port = port;
+        }
+
+        void add(String path, boolean prefix) {
+            NodeBuilder node = root;
+            String trimmed = path.startsWith("/") ? path.substring(1) : path;
+            if (prefix) {
+                // "/cb/" becomes segments [cb] with a wildcard below it
+                trimmed = trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+            }
+            if (!trimmed.isEmpty()) {
+                for (String segment : trimmed.split("/", -1)) {
+                    node = node.children.computeIfAbsent(segment, NodeBuilder::new);
+                }
+            }
+            if (prefix) {
+                node.wildcard = true;
+            } else {
+                node.terminal = true;
+            }
+        }
+
+        HostEntry build() {
+            return new HostEntry(scheme, host, port, root.build());
+        }
+    }
+
+    private static final class NodeBuilder {
+        private final String segment;
+        private final Map<String, NodeBuilder> children = new LinkedHashMap<>();
+        private boolean terminal;
+        private boolean wildcard;
+
+        NodeBuilder(String segment) {
+            this.segment = segment;
+        }
+
+        PathNode build() {
+            if (children.isEmpty()) {
+                return new PathNode(segment, terminal, wildcard, PathNode.NO_CHILDREN);
+            }
+            PathNode[] built = new PathNode[children.size()];
+            int i = 0;
+            for (NodeBuilder child : children.values()) {
+                built[i++] = child.build();
+            }
+            return new PathNode(segment, terminal, wildcard, built);
+        }
+    }
+}
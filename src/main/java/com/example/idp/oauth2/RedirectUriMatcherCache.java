@@ -0,0 +1,75 @@
+package com.example.idp.oauth2;
+
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.service.CacheResyncEvent;
+import com.example.idp.service.ClientChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+
+/**
+ * Compiled {@link RedirectUriMatcher}s by client id. An entry is reused while the
+ * client's updated_at is unchanged and is evicted after every committed
+ * {@link ClientChangedEvent}, since replacing only the redirect URI collection
+ * does not move updated_at.
+ */
+@Component
+public class RedirectUriMatcherCache {
+
+    @Value("${oauth2.redirect-uri-cache.max-size:10000}")
+    private long maxSize;
+
+    private Cache<String, RedirectUriMatcher> compiled;
+
+    @PostConstruct
+    public void init() {
+        compiled = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+    }
+
+    /**
+     * Returns the compiled matcher for the client, compiling it only when the client
+     * is new or has changed since the cached copy was built. Cache hits never touch
+     * the lazily loaded redirect URI collection.
+     */
+    public RedirectUriMatcher forClient(OAuthClient client) {
+        String clientId = client.getClientId();
+        if (clientId == null) {
+            return RedirectUriMatcher.compile(null, client.getRedirectUris());
+        }
+        RedirectUriMatcher matcher = compiled.getIfPresent(clientId);
+        if (matcher != null && Objects.equals(matcher.version(), client.getUpdatedAt())) {
+            return matcher;
+        }
+        matcher = RedirectUriMatcher.compile(client.getUpdatedAt(), client.getRedirectUris());
+        compiled.put(clientId, matcher);
+        return matcher;
+    }
+
+    public boolean matches(OAuthClient client, String redirectUri) {
+        return forClient(client).matches(redirectUri);
+    }
+
+    public void evict(String clientId) {
+        if (clientId != null) {
+            compiled.invalidate(clientId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onClientChanged(ClientChangedEvent event) {
+        evict(event.clientId());
+    }
+
+    @EventListener
+    public void onResync(CacheResyncEvent event) {
+        compiled.invalidateAll();
+    }
+}
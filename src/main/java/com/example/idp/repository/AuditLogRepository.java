@@ -24,6 +24,5 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
     
     @Query("SELECT COUNT(al) FROM AuditLog al WHERE al.eventType = :eventType AND al.createdAt >= :since")
     long countByEventTypeSince(@Param("eventType") String eventType, @Param("since") LocalDateTime since);
-    
-    void deleteByCreatedAtBefore(LocalDateTime cutoff);
+
 }
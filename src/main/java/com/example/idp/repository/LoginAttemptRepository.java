@@ -24,6 +24,5 @@ public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long
     
     @Query("SELECT la FROM LoginAttempt la WHERE la.email = :email AND la.attemptedAt > :since ORDER BY la.attemptedAt DESC")
     List<LoginAttempt> findRecentAttemptsByEmail(@Param("email") String email, @Param("since") LocalDateTime since);
-    
-    void deleteByAttemptedAtBefore(LocalDateTime cutoff);
+
 }
@@ -0,0 +1,49 @@
+package com.example.idp.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Read model for password login: everything the login path needs about a user,
+ * roles included, from a single query (see {@link UserRepository#findLoginCredentialsByEmail}).
+ * Also serves read-only profile views such as the dashboard.
+ */
+public interface LoginCredentials {
+
+    Long getId();
+
+    String getEmail();
+
+    String getPasswordHash();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String getProfilePictureUrl();
+
+    Boolean getIsActive();
+
+    Boolean getEmailVerified();
+
+    // Comma-separated role names, null when the user has none
+    String getRoles();
+
+    // Same rule as User.getFullName
+    default String getFullName() {
+        if (getFirstName() == null && getLastName() == null) {
+            return getEmail();
+        }
+        return String.format("%s %s",
+            getFirstName() != null ? getFirstName() : "",
+            getLastName() != null ? getLastName() : "").trim();
+    }
+    
+    default List<String> roleList() {
+        String roles = getRoles();
+        return roles == null || roles.isEmpty()
+            ? Collections.emptyList()
+            : Arrays.asList(roles.split(","));
+    }
+}
@@ -1,17 +1,46 @@
 package com.example.idp.repository;
 
 import com.example.idp.entity.OAuthClient;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OAuthClientRepository extends JpaRepository<OAuthClient, Long> {
+
+    String ACTIVE_BY_CLIENT_ID_REGION = "oauth-clients-by-client-id";
     
     Optional<OAuthClient> findByClientId(String clientId);
     
+    Optional<OAuthClient> findByClientIdAndDeletedAtIsNull(String clientId);
+    
+    List<OAuthClient> findByDeletedAtIsNull();
+    
     boolean existsByClientId(String clientId);
     
+    // Hot path of every token and authorize request; results live in the query cache
+    // and the client itself in the second-level cache
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ACTIVE_BY_CLIENT_ID_REGION)
+    })
     Optional<OAuthClient> findByClientIdAndIsActiveTrue(String clientId);
+    
+    // Every scope some active client can be granted, for the discovery document
+    @Query("SELECT DISTINCT s FROM OAuthClient c JOIN c.scopes s WHERE c.isActive = true")
+    List<String> findActiveScopes();
+    
+    // Deactivates at once; the row and its refresh tokens are removed by DeletionReaper
+    @Modifying
+    @Query("UPDATE OAuthClient c SET c.isActive = false, c.deletedAt = :now WHERE c.clientId = :clientId AND c.deletedAt IS NULL")
+    int markDeleted(@Param("clientId") String clientId, @Param("now") LocalDateTime now);
 }
@@ -31,9 +31,5 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     @Query("UPDATE RefreshToken rt SET rt.isRevoked = true WHERE rt.user.id = :userId AND rt.client.clientId = :clientId")
     void revokeTokensForUserAndClient(@Param("userId") Long userId, @Param("clientId") String clientId);
     
-    @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.expiresAt < :now OR rt.isRevoked = true")
-    void deleteExpiredAndRevokedTokens(@Param("now") LocalDateTime now);
-    
     long countByUserIdAndIsRevokedFalse(Long userId);
 }
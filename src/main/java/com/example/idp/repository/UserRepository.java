@@ -2,9 +2,11 @@ package com.example.idp.repository;
 
 import com.example.idp.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -14,24 +16,98 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     Optional<User> findByEmail(String email);
     
-    Optional<User> findByLinkedinId(String linkedinId);
-    
-    Optional<User> findByGoogleId(String googleId);
-    
     Optional<User> findByEmailVerificationToken(String token);
     
     Optional<User> findByPasswordResetToken(String token);
     
     boolean existsByEmail(String email);
     
-    boolean existsByLinkedinId(String linkedinId);
-    
     @Query("SELECT u FROM User u WHERE u.emailVerificationToken = :token AND u.emailVerificationExpiresAt > :now")
     Optional<User> findByValidEmailVerificationToken(@Param("token") String token, @Param("now") LocalDateTime now);
     
     @Query("SELECT u FROM User u WHERE u.passwordResetToken = :token AND u.passwordResetExpiresAt > :now")
     Optional<User> findByValidPasswordResetToken(@Param("token") String token, @Param("now") LocalDateTime now);
     
+    // Login read model: user row and aggregated roles in one round trip
+    @Query(value = """
+        SELECT u.id AS "id", u.email AS "email", u.password_hash AS "passwordHash",
+               u.first_name AS "firstName", u.last_name AS "lastName",
+               u.profile_picture_url AS "profilePictureUrl",
+               u.is_active AS "isActive", u.email_verified AS "emailVerified",
+               string_agg(ur.role, ',' ORDER BY ur.role) AS "roles"
+        FROM users u
+        LEFT JOIN user_roles ur ON ur.user_id = u.id
+        WHERE u.email = :email
+        GROUP BY u.id
+        """, nativeQuery = true)
+    Optional<LoginCredentials> findLoginCredentialsByEmail(@Param("email") String email);
+    
+    // Federated lookup: primary-key probe on user_identities, whatever the provider
+    @Query("SELECT u FROM UserIdentity i JOIN i.user u WHERE i.provider = :provider AND i.subject = :subject")
+    Optional<User> findByIdentity(@Param("provider") String provider, @Param("subject") String subject);
+    
+    /**
+     * Social-login provisioning in one statement: returns the user already linked to
+     * (provider, subject), otherwise inserts by email (filling a missing picture on
+     * conflict) and links the identity. The default USER role is inserted by the same
+     * statement, so concurrent first logins converge on one row instead of failing a
+     * unique constraint. Users marked deleted are neither returned nor touched, so
+     * the result is null for them; an identity still linked to such a user does not
+     * create a new account either. Deactivated users are returned without the role,
+     * for the caller to reject.
+     */
+    @Transactional
+    @Query(value = """
+        WITH linked AS (
+            SELECT u.* FROM user_identities i
+            JOIN users u ON u.id = i.user_id
+            WHERE i.provider = CAST(:provider AS varchar) AND i.subject = CAST(:subject AS varchar)
+              AND u.deleted_at IS NULL
+        ), upserted AS (
+            INSERT INTO users (email, first_name, last_name, profile_picture_url,
+                               email_verified, is_active, created_at, updated_at, last_login_at)
+            SELECT CAST(:email AS varchar), CAST(:firstName AS varchar), CAST(:lastName AS varchar),
+                   CAST(:picture AS varchar), true, true, now(), now(), now()
+            WHERE NOT EXISTS (SELECT 1 FROM user_identities
+                              WHERE provider = CAST(:provider AS varchar) AND subject = CAST(:subject AS varchar))
+            ON CONFLICT (email) DO UPDATE SET
+                profile_picture_url = COALESCE(users.profile_picture_url, EXCLUDED.profile_picture_url),
+                updated_at = CASE
+                    WHEN users.profile_picture_url IS NULL AND EXCLUDED.profile_picture_url IS NOT NULL
+                    THEN EXCLUDED.updated_at ELSE users.updated_at END
+            WHERE users.deleted_at IS NULL
+            RETURNING *
+        ), identity AS (
+            INSERT INTO user_identities (provider, subject, user_id, created_at)
+            SELECT CAST(:provider AS varchar), CAST(:subject AS varchar), id, now() FROM upserted
+            WHERE CAST(:subject AS varchar) IS NOT NULL
+            ON CONFLICT (provider, subject) DO NOTHING
+        ), default_role AS (
+            INSERT INTO user_roles (user_id, role, created_at)
+            SELECT id, 'USER', now()
+            FROM (SELECT id, is_active FROM upserted UNION ALL SELECT id, is_active FROM linked) AS u
+            WHERE u.is_active
+            ON CONFLICT (user_id, role) DO NOTHING
+        )
+        SELECT * FROM upserted
+        UNION ALL
+        SELECT * FROM linked
+        """, nativeQuery = true)
+    User upsertSocialUser(@Param("provider") String provider,
+                          @Param("subject") String subject,
+                          @Param("email") String email,
+                          @Param("firstName") String firstName,
+                          @Param("lastName") String lastName,
+                          @Param("picture") String picture);
+    
+    @Query("SELECT u.isActive FROM User u WHERE u.id = :id")
+    Optional<Boolean> findIsActiveById(@Param("id") Long id);
+
     @Query("SELECT COUNT(u) FROM User u WHERE u.createdAt >= :since")
     long countUsersRegisteredSince(@Param("since") LocalDateTime since);
+    
+    // Deactivates at once; the row and its dependents are removed by DeletionReaper
+    @Modifying
+    @Query("UPDATE User u SET u.isActive = false, u.deletedAt = :now WHERE u.id = :userId AND u.deletedAt IS NULL")
+    int markDeleted(@Param("userId") Long userId, @Param("now") LocalDateTime now);
 }
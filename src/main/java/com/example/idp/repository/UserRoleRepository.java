@@ -1,8 +1,11 @@
 package com.example.idp.repository;
 
 import com.example.idp.entity.UserRole;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -11,6 +14,8 @@ import java.util.Optional;
 
 @Repository
 public interface UserRoleRepository extends JpaRepository<UserRole, Long> {
+
+    String ROLE_NAMES_REGION = "user-role-names";
     
     List<UserRole> findByUserId(Long userId);
     
@@ -24,6 +29,10 @@ public interface UserRoleRepository extends JpaRepository<UserRole, Long> {
     List<String> findRolesByUserId(@Param("userId") Long userId);
     
     @Query("SELECT ur.role FROM UserRole ur WHERE ur.user.id = :userId")
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ROLE_NAMES_REGION)
+    })
     List<String> findRoleNamesByUserId(@Param("userId") Long userId);
     
     void deleteByUserIdAndRole(Long userId, String role);
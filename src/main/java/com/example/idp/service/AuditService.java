@@ -1,79 +1,186 @@
 package com.example.idp.service;
 
-import com.example.idp.entity.AuditLog;
-import com.example.idp.entity.User;
-import com.example.idp.repository.AuditLogRepository;
-import com.example.idp.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Audit trail. Each event is inserted at once on the audit pool, whose short
+ * connection timeout bounds how long a caller can wait. Events it cannot take
+ * are queued in memory and written by a background task as multi-row INSERTs
+ * over the batch pool; only these deferred events are lost in a crash. The queue
+ * is bounded: when the database cannot keep up, new events are dropped and
+ * counted rather than slowing down logins. A batch the database rejects is
+ * retried row by row, so one bad row is dropped without holding up the rest.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AuditService {
-    
-    private final AuditLogRepository auditLogRepository;
-    private final UserRepository userRepository;
-    
-    @Async
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void logEventAsync(Long userId, String eventType, String description, 
-                             String ipAddress, String userAgent) {
+
+    private final JdbcTemplate auditJdbcTemplate;
+    private final JdbcTemplate batchJdbcTemplate;
+    private final BlockingQueue<PendingEvent> pending;
+    private final Counter deferred;
+    private final Counter dropped;
+    private final Counter failed;
+
+    @Value("${audit.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${audit.batch-size:500}")
+    private int batchSize;
+
+    private ScheduledExecutorService flusher;
+
+    public AuditService(@Qualifier("auditDataSource") DataSource auditDataSource,
+                        @Qualifier("batchDataSource") DataSource batchDataSource,
+                        @Value("${audit.queue-capacity:100000}") int queueCapacity,
+                        MeterRegistry meterRegistry) {
+        this.auditJdbcTemplate = new JdbcTemplate(auditDataSource);
+        this.batchJdbcTemplate = new JdbcTemplate(batchDataSource);
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.deferred = Counter.builder("audit.events.deferred")
+            .description("Audit events queued for the background writer because the audit pool could not take them")
+            .register(meterRegistry);
+        this.dropped = Counter.builder("audit.events.dropped")
+            .description("Audit events dropped because the write queue was full")
+            .register(meterRegistry);
+        this.failed = Counter.builder("audit.events.failed")
+            .description("Audit events dropped because the database rejected them")
+            .register(meterRegistry);
+        Gauge.builder("audit.events.pending", pending, BlockingQueue::size)
+            .description("Audit events waiting to be written")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "audit-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
         try {
-            AuditLog auditLog = AuditLog.builder()
-                .eventType(eventType)
-                .description(description)
-                .ipAddress(ipAddress)
-                .userAgent(userAgent)
-                .build();
-            
-            // Only set user reference if userId exists and user is found in database
-            if (userId != null && userRepository.existsById(userId)) {
-                User user = new User();
-                user.setId(userId); // Create proxy reference
-                auditLog.setUser(user);
-            }
-            
-            auditLogRepository.save(auditLog);
-            log.debug("Audit event logged asynchronously: {} for user: {}", eventType, userId);
-            
-        } catch (Exception e) {
-            log.error("Async audit logging failed for event: {} and user: {}", eventType, userId, e);
-            // Don't rethrow - audit failures shouldn't break the main flow
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        flush();
     }
-    
-    // Synchronous version for critical events that must be logged immediately
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void logEvent(Long userId, String eventType, String description, 
+
+    // Kept for existing callers; logEvent never holds up the caller for long either
+    public void logEventAsync(Long userId, String eventType, String description,
+                             String ipAddress, String userAgent) {
+        logEvent(userId, eventType, description, ipAddress, userAgent);
+    }
+
+    public void logEvent(Long userId, String eventType, String description,
                         String ipAddress, String userAgent) {
+        PendingEvent event = new PendingEvent(userId, eventType, description, ipAddress, userAgent, LocalDateTime.now());
         try {
-            AuditLog auditLog = AuditLog.builder()
-                .eventType(eventType)
-                .description(description)
-                .ipAddress(ipAddress)
-                .userAgent(userAgent)
-                .build();
-            
-            // Only set user reference if userId exists and user is found in database
-            if (userId != null && userRepository.existsById(userId)) {
-                User user = new User();
-                user.setId(userId); // Create proxy reference
-                auditLog.setUser(user);
-            } else if (userId != null) {
-                log.warn("User with ID {} not found, logging audit event without user reference", userId);
+            write(auditJdbcTemplate, List.of(event));
+        } catch (DataAccessException e) {
+            log.debug("Deferring audit event {} for user {}: {}", eventType, userId, e.getMessage());
+            deferred.increment();
+            enqueue(event);
+        }
+    }
+
+    private void enqueue(PendingEvent event) {
+        if (!pending.offer(event)) {
+            dropped.increment();
+            log.warn("Audit queue full, dropping event: {} for user: {}", event.eventType(), event.userId());
+        }
+    }
+
+    synchronized void flush() {
+        List<PendingEvent> batch = new ArrayList<>();
+        while (pending.drainTo(batch, batchSize) > 0) {
+            try {
+                write(batchJdbcTemplate, batch);
+                log.debug("Wrote {} audit events", batch.size());
+            } catch (DataAccessResourceFailureException | TransientDataAccessException e) {
+                log.warn("Failed to write {} audit events, retrying next flush: {}", batch.size(), e.getMessage());
+                batch.forEach(this::enqueue);
+                return;
+            } catch (DataAccessException e) {
+                if (!writeEach(batch)) {
+                    return;
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    // Writes the events one at a time, dropping those the database rejects. Returns
+    // false, with the unwritten events queued again, if the database became unavailable
+    private boolean writeEach(List<PendingEvent> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            PendingEvent event = batch.get(i);
+            try {
+                write(batchJdbcTemplate, List.of(event));
+            } catch (DataAccessResourceFailureException | TransientDataAccessException e) {
+                log.warn("Failed to write {} audit events, retrying next flush: {}", batch.size() - i, e.getMessage());
+                batch.subList(i, batch.size()).forEach(this::enqueue);
+                return false;
+            } catch (DataAccessException e) {
+                failed.increment();
+                log.error("Dropping audit event the database rejected: {} for user: {} at {}: {}",
+                    event.eventType(), event.userId(), event.createdAt(), e.getMessage());
             }
-            
-            auditLogRepository.save(auditLog);
-            log.debug("Audit event logged: {} for user: {}", eventType, userId);
-            
-        } catch (Exception e) {
-            log.error("Failed to log audit event: {} for user: {}", eventType, userId, e);
-            // Don't rethrow the exception to avoid breaking the main flow
         }
+        return true;
+    }
+
+    private static void write(JdbcTemplate jdbcTemplate, List<PendingEvent> batch) {
+        StringBuilder sql = new StringBuilder(
+            "INSERT INTO audit_logs (user_id, event_type, description, ip_address, user_agent, created_at)"
+            + " SELECT u.id, v.event_type, v.description, v.ip_address, v.user_agent, v.created_at FROM (VALUES ");
+        Object[] args = new Object[batch.size() * 6];
+        for (int i = 0; i < batch.size(); i++) {
+            PendingEvent event = batch.get(i);
+            sql.append(i == 0 ? "" : ", ").append("(?::bigint, ?, ?, ?, ?, ?::timestamp)");
+            args[i * 6] = event.userId();
+            args[i * 6 + 1] = event.eventType();
+            args[i * 6 + 2] = event.description();
+            args[i * 6 + 3] = event.ipAddress();
+            args[i * 6 + 4] = event.userAgent();
+            args[i * 6 + 5] = event.createdAt();
+        }
+        // Events for users that no longer exist are kept without the user reference
+        sql.append(") AS v(user_id, event_type, description, ip_address, user_agent, created_at)")
+            .append(" LEFT JOIN users u ON u.id = v.user_id");
+
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    private record PendingEvent(Long userId, String eventType, String description,
+                                String ipAddress, String userAgent, LocalDateTime createdAt) {
     }
 }
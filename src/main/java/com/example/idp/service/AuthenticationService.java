@@ -5,10 +5,13 @@ import com.example.idp.entity.LoginAttempt;
 import com.example.idp.entity.RefreshToken;
 import com.example.idp.entity.OAuthClient;
 import com.example.idp.repository.LoginAttemptRepository;
+import com.example.idp.repository.LoginCredentials;
 import com.example.idp.repository.RefreshTokenRepository;
 import com.example.idp.repository.OAuthClientRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,6 +32,7 @@ public class AuthenticationService {
     private final OAuthClientRepository oauthClientRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuditService auditService;
+    private final ApplicationEventPublisher eventPublisher;
     
     private static final int MAX_LOGIN_ATTEMPTS = 5;
     private static final int LOCKOUT_DURATION_MINUTES = 15;
@@ -48,40 +52,41 @@ public class AuthenticationService {
             return AuthenticationResult.failure("Invalid client");
         }
         
-        // Find user
-        Optional<User> userOpt = userService.findByEmail(email);
-        if (userOpt.isEmpty()) {
+        // Find user: one query for the credentials, flags and roles
+        Optional<LoginCredentials> credentialsOpt = userService.findLoginCredentials(email);
+        if (credentialsOpt.isEmpty()) {
             recordLoginAttempt(email, false, ipAddress, userAgent);
             return AuthenticationResult.failure("Invalid credentials");
         }
         
-        User user = userOpt.get();
+        LoginCredentials credentials = credentialsOpt.get();
         
         // Check if user is active
-        if (!user.getIsActive()) {
+        if (!Boolean.TRUE.equals(credentials.getIsActive())) {
             recordLoginAttempt(email, false, ipAddress, userAgent);
             return AuthenticationResult.failure("Account is deactivated");
         }
         
         // Check if email is verified
-        if (!user.getEmailVerified()) {
+        if (!Boolean.TRUE.equals(credentials.getEmailVerified())) {
             recordLoginAttempt(email, false, ipAddress, userAgent);
             return AuthenticationResult.failure("Email not verified");
         }
         
         // Validate password
-        if (!userService.validatePassword(user, password)) {
+        if (!userService.validatePassword(credentials, password)) {
             recordLoginAttempt(email, false, ipAddress, userAgent);
             return AuthenticationResult.failure("Invalid credentials");
         }
         
         // Successful authentication
         recordLoginAttempt(email, true, ipAddress, userAgent);
-        userService.updateLastLogin(user.getId());
+        userService.updateLastLogin(credentials.getId());
         
-        // Generate tokens
-        String accessToken = jwtService.generateAccessToken(user, clientId);
-        String refreshToken = generateAndStoreRefreshToken(user, client);
+        // Generate tokens; the user entity itself is never loaded
+        User user = toUser(credentials);
+        String accessToken = jwtService.generateAccessToken(user, credentials.roleList(), clientId);
+        String refreshToken = generateAndStoreRefreshToken(userService.getReference(credentials.getId()), client);
         
         // Log successful login
         auditService.logEvent(user.getId(), "LOGIN", 
@@ -101,11 +106,11 @@ public class AuthenticationService {
             return AuthenticationResult.failure("Invalid client");
         }
         
-        // Register or get existing OAuth user
-        User user = userService.registerOAuthUser(email, firstName, lastName, linkedinId, profilePictureUrl);
-        
-        // Check if user is active
-        if (!user.getIsActive()) {
+        // Register or get existing OAuth user; deactivated and deleted accounts are refused
+        User user;
+        try {
+            user = userService.registerOAuthUser(email, firstName, lastName, linkedinId, profilePictureUrl);
+        } catch (DisabledException e) {
             return AuthenticationResult.failure("Account is deactivated");
         }
         
@@ -188,11 +193,10 @@ public class AuthenticationService {
     public void logoutAllSessions(Long userId) {
         refreshTokenRepository.revokeAllTokensForUser(userId);
         auditService.logEvent(userId, "LOGOUT_ALL", "All sessions logged out", null, null);
+        eventPublisher.publishEvent(new UserChangedEvent(userId));
     }
     
     private OAuthClient validateClient(String clientId) {
-        log.error("============= exception validateClient 1: {}", clientId);
-        log.error("============= exception validateClient 2: {}", oauthClientRepository.findByClientIdAndIsActiveTrue(clientId).orElse(null));
         return oauthClientRepository.findByClientIdAndIsActiveTrue(clientId).orElse(null);
     }
     
@@ -227,6 +231,19 @@ public class AuthenticationService {
         return String.valueOf(token.hashCode());
     }
     
+    // Detached, response-only view of the login read model; never persisted
+    private User toUser(LoginCredentials credentials) {
+        return User.builder()
+                .id(credentials.getId())
+                .email(credentials.getEmail())
+                .firstName(credentials.getFirstName())
+                .lastName(credentials.getLastName())
+                .profilePictureUrl(credentials.getProfilePictureUrl())
+                .emailVerified(credentials.getEmailVerified())
+                .isActive(credentials.getIsActive())
+                .build();
+    }
+    
     private boolean isAccountLocked(String email) {
         LocalDateTime cutoff = LocalDateTime.now().minusMinutes(LOCKOUT_DURATION_MINUTES);
         long failedAttempts = loginAttemptRepository.countFailedAttemptsByEmailSince(email, cutoff);
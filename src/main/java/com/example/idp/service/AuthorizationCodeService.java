@@ -0,0 +1,233 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.entity.User;
+import com.example.idp.oauth2.AuthorizationCode;
+import com.example.idp.oauth2.AuthorizationCodeStore;
+import com.example.idp.oauth2.RedirectUriMatcherCache;
+import com.example.idp.repository.OAuthClientRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Authorization-code grant with mandatory PKCE (S256). Codes never reach the
+ * database: they are issued into and redeemed from the {@link AuthorizationCodeStore}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuthorizationCodeService {
+
+    public static final String GRANT_TYPE = "authorization_code";
+    private static final String PKCE_METHOD_S256 = "S256";
+
+    private final AuthorizationCodeStore codeStore;
+    private final OAuthClientRepository oauthClientRepository;
+    private final RedirectUriMatcherCache redirectUriMatchers;
+    private final AuthenticationService authenticationService;
+    private final UserService userService;
+    private final JwtService jwtService;
+
+    @Value("${oauth2.authorization-code.expiration:60}") // 1 minute default
+    private long codeExpiration;
+
+    @Value("${jwt.access-token.expiration:900}")
+    private long accessTokenExpiration;
+
+    public AuthorizationResult authorize(Long userId, String responseType, String clientId, String redirectUri,
+                                         String scope, String codeChallenge, String codeChallengeMethod) {
+        Optional<OAuthClient> clientOpt = clientId != null
+            ? oauthClientRepository.findByClientIdAndIsActiveTrue(clientId)
+            : Optional.empty();
+        if (clientOpt.isEmpty()) {
+            return AuthorizationResult.rejected("Unknown client");
+        }
+        OAuthClient client = clientOpt.get();
+
+        // Until the redirect URI is known to belong to the client, errors must not redirect
+        if (redirectUri == null && client.getRedirectUris() != null && client.getRedirectUris().size() == 1) {
+            redirectUri = client.getRedirectUris().get(0);
+        }
+        if (redirectUri == null || !redirectUriMatchers.matches(client, redirectUri)) {
+            return AuthorizationResult.rejected("Invalid redirect_uri");
+        }
+
+        if (!"code".equals(responseType)) {
+            return AuthorizationResult.error(redirectUri, "unsupported_response_type");
+        }
+        if (codeChallenge == null || codeChallenge.isBlank()) {
+            return AuthorizationResult.error(redirectUri, "invalid_request");
+        }
+        if (codeChallengeMethod != null && !PKCE_METHOD_S256.equals(codeChallengeMethod)) {
+            return AuthorizationResult.error(redirectUri, "invalid_request");
+        }
+
+        String grantedScope;
+        if (scope == null || scope.isBlank()) {
+            grantedScope = client.getScopes() != null ? String.join(" ", client.getScopes()) : "";
+        } else {
+            Set<String> requested = new LinkedHashSet<>(Arrays.asList(scope.trim().split("\\s+")));
+            for (String s : requested) {
+                if (!client.hasScopeAccess(s)) {
+                    return AuthorizationResult.error(redirectUri, "invalid_scope");
+                }
+            }
+            grantedScope = String.join(" ", requested);
+        }
+
+        AuthorizationCode code = new AuthorizationCode(
+            client.getClientId(),
+            userId,
+            redirectUri,
+            grantedScope,
+            codeChallenge,
+            PKCE_METHOD_S256,
+            System.currentTimeMillis() + codeExpiration * 1000
+        );
+        String value = codeStore.save(code);
+
+        log.debug("Authorization code issued to client {} for user {}", clientId, userId);
+        return AuthorizationResult.success(redirectUri, value);
+    }
+
+    public TokenResult redeem(String codeValue, String clientId, String clientSecret,
+                              String redirectUri, String codeVerifier) {
+        if (codeValue == null || clientId == null || codeVerifier == null) {
+            return TokenResult.failure("invalid_request", "code, client_id and code_verifier are required");
+        }
+
+        // Consume first: whatever happens next, the code cannot be replayed
+        Optional<AuthorizationCode> codeOpt = codeStore.redeem(codeValue);
+        if (codeOpt.isEmpty()) {
+            return TokenResult.failure("invalid_grant", "Invalid or expired authorization code");
+        }
+        AuthorizationCode code = codeOpt.get();
+
+        if (!code.clientId().equals(clientId)) {
+            return TokenResult.failure("invalid_grant", "Authorization code was issued to another client");
+        }
+        // RFC 6749 4.1.3: required and identical whenever the authorization request carried one
+        if (code.redirectUri() != null && !code.redirectUri().equals(redirectUri)) {
+            return TokenResult.failure("invalid_grant", "redirect_uri mismatch");
+        }
+        if (!verifyCodeChallenge(codeVerifier, code.codeChallenge())) {
+            return TokenResult.failure("invalid_grant", "PKCE verification failed");
+        }
+
+        // The client record decides: confidential clients must authenticate, public
+        // clients are bound by PKCE alone. Omitting the secret is not a way out.
+        Optional<OAuthClient> clientOpt = oauthClientRepository.findByClientIdAndIsActiveTrue(clientId);
+        if (clientOpt.isEmpty()) {
+            return TokenResult.failure("invalid_client", "Client authentication failed");
+        }
+        if (!Boolean.TRUE.equals(clientOpt.get().getPublicClient())
+                && (clientSecret == null || !authenticationService.validateClientCredentials(clientId, clientSecret))) {
+            return TokenResult.failure("invalid_client", "Client authentication failed");
+        }
+
+        Optional<User> userOpt = userService.findById(code.userId());
+        if (userOpt.isEmpty() || !userOpt.get().getIsActive()) {
+            return TokenResult.failure("invalid_grant", "User is no longer active");
+        }
+
+        String accessToken = jwtService.generateScopedAccessToken(userOpt.get(), clientId, code.scope());
+        return TokenResult.success(accessToken, accessTokenExpiration, code.scope());
+    }
+
+    private boolean verifyCodeChallenge(String codeVerifier, String codeChallenge) {
+        // RFC 7636: 43-128 characters from the unreserved set
+        if (codeVerifier.length() < 43 || codeVerifier.length() > 128
+                || !codeVerifier.matches("[A-Za-z0-9\\-._~]+")) {
+            return false;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(codeVerifier.getBytes(StandardCharsets.US_ASCII));
+            String computed = Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+            return MessageDigest.isEqual(
+                computed.getBytes(StandardCharsets.US_ASCII),
+                codeChallenge.getBytes(StandardCharsets.US_ASCII));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Result classes
+    public static class AuthorizationResult {
+        private final String redirectUri;
+        private final String code;
+        private final String error;
+
+        private AuthorizationResult(String redirectUri, String code, String error) {
+            this.redirectUri = redirectUri;
+            this.code = code;
+            this.error = error;
+        }
+
+        public static AuthorizationResult success(String redirectUri, String code) {
+            return new AuthorizationResult(redirectUri, code, null);
+        }
+
+        // Error reported back to the client through its redirect URI
+        public static AuthorizationResult error(String redirectUri, String error) {
+            return new AuthorizationResult(redirectUri, null, error);
+        }
+
+        // Error that must be shown to the user instead of redirecting
+        public static AuthorizationResult rejected(String error) {
+            return new AuthorizationResult(null, null, error);
+        }
+
+        // Getters
+        public boolean isSuccess() { return code != null; }
+        public boolean canRedirect() { return redirectUri != null; }
+        public String getRedirectUri() { return redirectUri; }
+        public String getCode() { return code; }
+        public String getError() { return error; }
+    }
+
+    public static class TokenResult {
+        private final boolean success;
+        private final String error;
+        private final String errorDescription;
+        private final String accessToken;
+        private final long expiresIn;
+        private final String scope;
+
+        private TokenResult(boolean success, String error, String errorDescription,
+                            String accessToken, long expiresIn, String scope) {
+            this.success = success;
+            this.error = error;
+            this.errorDescription = errorDescription;
+            this.accessToken = accessToken;
+            this.expiresIn = expiresIn;
+            this.scope = scope;
+        }
+
+        public static TokenResult success(String accessToken, long expiresIn, String scope) {
+            return new TokenResult(true, null, null, accessToken, expiresIn, scope);
+        }
+
+        public static TokenResult failure(String error, String errorDescription) {
+            return new TokenResult(false, error, errorDescription, null, 0, null);
+        }
+
+        // Getters
+        public boolean isSuccess() { return success; }
+        public String getError() { return error; }
+        public String getErrorDescription() { return errorDescription; }
+        public String getAccessToken() { return accessToken; }
+        public long getExpiresIn() { return expiresIn; }
+        public String getScope() { return scope; }
+    }
+}
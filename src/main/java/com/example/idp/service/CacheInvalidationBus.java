@@ -0,0 +1,211 @@
+package com.example.idp.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Relays cache invalidations between nodes over Postgres LISTEN/NOTIFY.
+ *
+ * Local {@link UserChangedEvent}s and {@link ClientChangedEvent}s are sent as a
+ * {@code pg_notify} on the publisher's own connection, so inside a transaction the
+ * message goes out on commit and is dropped on rollback. Each node keeps one
+ * dedicated connection (outside the pool) listening on the channel and republishes
+ * other nodes' messages as local events. Whenever that connection is (re)established
+ * a {@link CacheResyncEvent} is published, since messages sent while it was down
+ * are lost.
+ *
+ * Enabled with {@code cluster.cache-invalidation.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "cluster.cache-invalidation.enabled", havingValue = "true")
+@Slf4j
+public class CacheInvalidationBus {
+
+    private static final String USER = "u";
+    private static final String CLIENT = "c";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String channel;
+    private final int pollMs;
+    private final long keepaliveMs;
+    private final long reconnectMs;
+
+    // Distinguishes our own messages, which Postgres also delivers to us
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread listener;
+
+    public CacheInvalidationBus(
+            JdbcTemplate jdbcTemplate,
+            DataSourceProperties dataSourceProperties,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${cluster.cache-invalidation.channel:idp_cache_invalidation}") String channel,
+            @Value("${cluster.cache-invalidation.poll-ms:1000}") int pollMs,
+            @Value("${cluster.cache-invalidation.keepalive-ms:30000}") long keepaliveMs,
+            @Value("${cluster.cache-invalidation.reconnect-ms:2000}") long reconnectMs) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid cache invalidation channel: " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.eventPublisher = eventPublisher;
+        this.channel = channel;
+        this.pollMs = pollMs;
+        this.keepaliveMs = keepaliveMs;
+        this.reconnectMs = reconnectMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+        log.info("Cache invalidation bus on channel {} as node {}", channel, nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        listener.interrupt();
+        closeQuietly(connection);
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.userId() != null) {
+            send(USER, event.userId().toString());
+        }
+    }
+
+    @EventListener
+    public void onClientChanged(ClientChangedEvent event) {
+        if (event.clientId() != null) {
+            send(CLIENT, event.clientId());
+        }
+    }
+
+    private void send(String kind, String key) {
+        // Events we republish from the listener came from another node already
+        if (Thread.currentThread() == listener) {
+            return;
+        }
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, channel, nodeId + ":" + kind + ":" + key);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast invalidation {}:{}: {}", kind, key, e.getMessage());
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection conn = connect()) {
+                connection = conn;
+                try (Statement statement = conn.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                // Anything sent before LISTEN took effect was missed
+                eventPublisher.publishEvent(new CacheResyncEvent());
+                log.info("Listening for cache invalidations on {}", channel);
+
+                PGConnection pgConnection = conn.unwrap(PGConnection.class);
+                long lastActivity = System.currentTimeMillis();
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollMs);
+                    if (notifications != null && notifications.length > 0) {
+                        for (PGNotification notification : notifications) {
+                            apply(notification.getParameter());
+                        }
+                        lastActivity = System.currentTimeMillis();
+                    } else if (System.currentTimeMillis() - lastActivity > keepaliveMs) {
+                        // Surfaces a dead connection that would otherwise just stay quiet
+                        try (Statement statement = conn.createStatement()) {
+                            statement.execute("SELECT 1");
+                        }
+                        lastActivity = System.currentTimeMillis();
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    log.warn("Cache invalidation listener disconnected, retrying in {} ms: {}", reconnectMs, e.getMessage());
+                    sleep(reconnectMs);
+                }
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Properties properties = new Properties();
+        if (dataSourceProperties.determineUsername() != null) {
+            properties.setProperty("user", dataSourceProperties.determineUsername());
+        }
+        if (dataSourceProperties.determinePassword() != null) {
+            properties.setProperty("password", dataSourceProperties.determinePassword());
+        }
+        properties.setProperty("ApplicationName", "idp-cache-invalidation");
+        Connection conn = DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+        conn.setAutoCommit(true);
+        return conn;
+    }
+
+    void apply(String payload) {
+        String[] parts = payload == null ? new String[0] : payload.split(":", 3);
+        if (parts.length != 3) {
+            log.warn("Ignoring malformed cache invalidation: {}", payload);
+            return;
+        }
+        if (parts[0].equals(nodeId)) {
+            return;
+        }
+        try {
+            switch (parts[1]) {
+                case USER -> eventPublisher.publishEvent(new UserChangedEvent(Long.valueOf(parts[2])));
+                case CLIENT -> eventPublisher.publishEvent(new ClientChangedEvent(parts[2]));
+                default -> log.warn("Ignoring unknown cache invalidation: {}", payload);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to apply cache invalidation {}: {}", payload, e.getMessage());
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+                // shutting down
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.idp.service;
+
+/**
+ * Published when this node may have missed invalidations from other nodes (the
+ * invalidation listener was disconnected); caches should drop everything.
+ */
+public record CacheResyncEvent() {
+}
@@ -0,0 +1,75 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.oauth2.ClaimProfile;
+import com.example.idp.repository.OAuthClientRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ClaimProfileService {
+
+    private final OAuthClientRepository oauthClientRepository;
+
+    @Value("${claims.profile-cache.max-size:10000}")
+    private long maxSize;
+
+    // One entry per registered client; profiles themselves are shared singletons
+    private Cache<String, ClaimProfile> profilesByClient;
+
+    @PostConstruct
+    public void init() {
+        profilesByClient = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+    }
+
+    public ClaimProfile profileFor(String clientId) {
+        if (clientId == null) {
+            return ClaimProfile.FULL;
+        }
+        ClaimProfile profile = profilesByClient.getIfPresent(clientId);
+        if (profile != null) {
+            return profile;
+        }
+
+        // Clients unknown to the registry (e.g. built-in widget ids) keep the full claim
+        // set; they are not cached, so arbitrary client ids cannot fill the cache
+        Optional<OAuthClient> client = oauthClientRepository.findByClientId(clientId);
+        if (client.isEmpty()) {
+            return ClaimProfile.FULL;
+        }
+        profile = ClaimProfile.of(client.get().getClaimProfile());
+        profilesByClient.put(clientId, profile);
+
+        log.debug("Claim profile for client {}: {}", clientId, profile.getName());
+        return profile;
+    }
+
+    public void evict(String clientId) {
+        if (clientId != null) {
+            profilesByClient.invalidate(clientId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onClientChanged(ClientChangedEvent event) {
+        evict(event.clientId());
+    }
+
+    @EventListener
+    public void onResync(CacheResyncEvent event) {
+        profilesByClient.invalidateAll();
+    }
+}
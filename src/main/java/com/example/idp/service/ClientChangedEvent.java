@@ -0,0 +1,8 @@
+package com.example.idp.service;
+
+/**
+ * Published when an OAuth client registration is created, changed or deleted, so
+ * per-client caches can drop their entry.
+ */
+public record ClientChangedEvent(String clientId) {
+}
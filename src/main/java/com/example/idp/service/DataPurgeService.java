@@ -0,0 +1,153 @@
+package com.example.idp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes expired refresh tokens, old login attempts and old audit events in
+ * small chunks on the batch pool. Each chunk is its own short statement, so no
+ * large lock set or long transaction builds up, and a run stops early when the
+ * replica falls behind or interactive traffic is waiting for connections; the
+ * next run picks up where it left off.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "purge.enabled", havingValue = "true", matchIfMissing = true)
+public class DataPurgeService {
+
+    private final JdbcTemplate batchJdbcTemplate;
+    private final PurgeThrottle throttle;
+    private final MeterRegistry meterRegistry;
+    private final List<PurgeTarget> targets;
+
+    @Value("${purge.initial-delay-ms:60000}")
+    private long initialDelayMs;
+
+    @Value("${purge.interval-ms:600000}")
+    private long intervalMs;
+
+    @Value("${purge.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${purge.pause-ms:100}")
+    private long pauseMs;
+
+    @Value("${purge.max-chunks-per-run:1000}")
+    private int maxChunksPerRun;
+
+    private ScheduledExecutorService scheduler;
+
+    public DataPurgeService(@Qualifier("batchDataSource") DataSource batchDataSource,
+                            PurgeThrottle throttle,
+                            MeterRegistry meterRegistry,
+                            // Expired tokens, and revoked ones created before the cutoff
+                            @Value("${purge.refresh-tokens.retention-days:1}") long refreshTokenDays,
+                            @Value("${purge.login-attempts.retention-days:30}") long loginAttemptDays,
+                            @Value("${purge.audit-logs.retention-days:365}") long auditLogDays) {
+        this.batchJdbcTemplate = new JdbcTemplate(batchDataSource);
+        this.throttle = throttle;
+        this.meterRegistry = meterRegistry;
+        this.targets = List.of(
+            // idx_refresh_tokens_expires_at and idx_refresh_tokens_revoked_created_at serve the two branches
+            new PurgeTarget("refresh_tokens", "expires_at < ? OR (is_revoked AND created_at < ?)", refreshTokenDays),
+            new PurgeTarget("login_attempts", "attempted_at < ?", loginAttemptDays),
+            new PurgeTarget("audit_logs", "created_at < ?", auditLogDays));
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "data-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, initialDelayMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            purge();
+        } catch (Exception e) {
+            log.warn("Data purge failed, retrying next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs one pass over every table. Returns false if the pass was cut short by
+     * throttling or the per-run chunk limit.
+     */
+    boolean purge() throws InterruptedException {
+        int chunks = 0;
+        for (PurgeTarget target : targets) {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(target.retentionDays());
+            int deleted;
+            do {
+                if (chunks++ >= maxChunksPerRun) {
+                    log.info("Data purge stopped after {} chunks, continuing next run", maxChunksPerRun);
+                    return false;
+                }
+                String reason = throttle.reason();
+                if (reason != null) {
+                    meterRegistry.counter("purge.throttled", "reason", reason).increment();
+                    log.info("Data purge paused ({}), continuing next run", reason);
+                    return false;
+                }
+                deleted = deleteChunk(target, cutoff);
+                if (deleted == chunkSize) {
+                    Thread.sleep(pauseMs);
+                }
+            } while (deleted == chunkSize);
+        }
+        return true;
+    }
+
+    private int deleteChunk(PurgeTarget target, LocalDateTime cutoff) {
+        // SKIP LOCKED leaves rows a request is touching right now for a later chunk
+        String sql = "DELETE FROM " + target.table() + " WHERE id IN (SELECT id FROM " + target.table()
+            + " WHERE " + target.condition() + " LIMIT ? FOR UPDATE SKIP LOCKED)";
+        int deleted = Timer.builder("purge.chunk")
+            .tag("table", target.table())
+            .register(meterRegistry)
+            .record(() -> batchJdbcTemplate.update(sql, target.args(cutoff, chunkSize)));
+        if (deleted > 0) {
+            Counter.builder("purge.rows.deleted")
+                .tag("table", target.table())
+                .register(meterRegistry)
+                .increment(deleted);
+            log.debug("Purged {} rows from {}", deleted, target.table());
+        }
+        return deleted;
+    }
+
+    // Every placeholder in the condition takes the cutoff
+    private record PurgeTarget(String table, String condition, long retentionDays) {
+        Object[] args(LocalDateTime cutoff, int limit) {
+            Object[] args = new Object[(int) condition.chars().filter(c -> c == '?').count() + 1];
+            Arrays.fill(args, cutoff);
+            args[args.length - 1] = limit;
+            return args;
+        }
+    }
+}
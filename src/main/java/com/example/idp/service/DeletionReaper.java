@@ -0,0 +1,177 @@
+package com.example.idp.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Second half of deleting a user or OAuth client. The request only marks the row
+ * deleted and inactive; this job then removes refresh tokens (and, for users,
+ * detaches audit events) in chunks on the batch pool, and finally deletes the
+ * roles, identities and the row itself in one short transaction. Nothing is
+ * loaded into the heap, and a run gives way under the same back-pressure as
+ * {@link DataPurgeService}; whatever is left is picked up by the next run.
+ */
+@Service
+@Slf4j
+public class DeletionReaper {
+
+    private final JdbcTemplate batchJdbcTemplate;
+    private final TransactionTemplate batchTransaction;
+    private final PurgeThrottle throttle;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${deletion.interval-ms:60000}")
+    private long intervalMs;
+
+    @Value("${deletion.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${deletion.pause-ms:100}")
+    private long pauseMs;
+
+    private ScheduledExecutorService scheduler;
+
+    public DeletionReaper(@Qualifier("batchDataSource") DataSource batchDataSource,
+                          PurgeThrottle throttle,
+                          MeterRegistry meterRegistry) {
+        this.batchJdbcTemplate = new JdbcTemplate(batchDataSource);
+        this.batchTransaction = new TransactionTemplate(new DataSourceTransactionManager(batchDataSource));
+        this.throttle = throttle;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "deletion-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Starts a run once the current transaction commits, so a deleted row is
+     * usually gone within seconds rather than at the next interval.
+     */
+    public void reapAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            wakeUp();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                wakeUp();
+            }
+        });
+    }
+
+    private void wakeUp() {
+        try {
+            scheduler.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            log.debug("Deletion reaper is shut down, leaving deleted rows for the next start");
+        }
+    }
+
+    private void run() {
+        try {
+            reap();
+        } catch (Exception e) {
+            log.warn("Deletion reaper failed, retrying next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Removes every client and user marked deleted. Returns false if the run was
+     * cut short by throttling.
+     */
+    synchronized boolean reap() throws InterruptedException {
+        List<Map<String, Object>> clients = batchJdbcTemplate.queryForList(
+            "SELECT id, client_id FROM oauth_clients WHERE deleted_at IS NOT NULL");
+        for (Map<String, Object> client : clients) {
+            Object id = client.get("id");
+            Object clientId = client.get("client_id");
+            if (!inChunks("refresh_tokens", "DELETE FROM refresh_tokens", "client_id", clientId)) {
+                return false;
+            }
+            // Tokens issued while the chunks ran are few; they go with the client
+            batchTransaction.executeWithoutResult(status -> {
+                batchJdbcTemplate.update("DELETE FROM refresh_tokens WHERE client_id = ?", clientId);
+                batchJdbcTemplate.update("DELETE FROM client_redirect_uris WHERE client_id = ?", id);
+                batchJdbcTemplate.update("DELETE FROM client_scopes WHERE client_id = ?", id);
+                batchJdbcTemplate.update("DELETE FROM oauth_clients WHERE id = ?", id);
+            });
+            meterRegistry.counter("deletion.completed", "type", "client").increment();
+            log.info("Removed deleted OAuth client: {}", clientId);
+        }
+
+        List<Long> users = batchJdbcTemplate.queryForList(
+            "SELECT id FROM users WHERE deleted_at IS NOT NULL", Long.class);
+        for (Long userId : users) {
+            if (!inChunks("refresh_tokens", "DELETE FROM refresh_tokens", "user_id", userId)) {
+                return false;
+            }
+            // Audit events outlive the user, without the reference (as AuditService writes them)
+            if (!inChunks("audit_logs", "UPDATE audit_logs SET user_id = NULL", "user_id", userId)) {
+                return false;
+            }
+            batchTransaction.executeWithoutResult(status -> {
+                batchJdbcTemplate.update("DELETE FROM refresh_tokens WHERE user_id = ?", userId);
+                batchJdbcTemplate.update("UPDATE audit_logs SET user_id = NULL WHERE user_id = ?", userId);
+                batchJdbcTemplate.update("DELETE FROM user_roles WHERE user_id = ?", userId);
+                batchJdbcTemplate.update("DELETE FROM user_identities WHERE user_id = ?", userId);
+                batchJdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+            });
+            meterRegistry.counter("deletion.completed", "type", "user").increment();
+            log.info("Removed deleted user: {}", userId);
+        }
+        return true;
+    }
+
+    // Applies the statement to rows of table whose column equals key, chunkSize rows at a time
+    private boolean inChunks(String table, String statement, String column, Object key) throws InterruptedException {
+        String sql = statement + " WHERE id IN (SELECT id FROM " + table + " WHERE " + column + " = ? LIMIT ?)";
+        int affected;
+        do {
+            String reason = throttle.reason();
+            if (reason != null) {
+                meterRegistry.counter("deletion.throttled", "reason", reason).increment();
+                log.info("Deletion reaper paused ({}), continuing next run", reason);
+                return false;
+            }
+            affected = batchJdbcTemplate.update(sql, key, chunkSize);
+            if (affected > 0) {
+                meterRegistry.counter("deletion.rows", "table", table).increment(affected);
+            }
+            if (affected == chunkSize) {
+                Thread.sleep(pauseMs);
+            }
+        } while (affected == chunkSize);
+        return true;
+    }
+}
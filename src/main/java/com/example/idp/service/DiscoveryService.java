@@ -0,0 +1,131 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.repository.OAuthClientRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Authorization server metadata. The document depends on configuration, the
+ * signing key and the scopes registered for clients, so it is serialized and
+ * gzipped once and rebuilt only when the key id changes or a client does.
+ *
+ * Only what the server honours is advertised: no ID token is issued yet, so the
+ * OpenID-only fields are left out.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DiscoveryService {
+
+    private final JwtService jwtService;
+    private final ObjectMapper objectMapper;
+    private final OAuthClientRepository oauthClientRepository;
+
+    @Value("${app.base-url:http://localhost:8080}")
+    private String baseUrl;
+
+    @Value("${jwt.issuer:idp-service}")
+    private String issuer;
+
+    private volatile Document document;
+
+    public Document getDocument() {
+        Document current = document;
+        String keyId = jwtService.getKeyId();
+        if (current == null || !current.keyId().equals(keyId)) {
+            synchronized (this) {
+                current = document;
+                if (current == null || !current.keyId().equals(keyId)) {
+                    current = build(keyId);
+                    document = current;
+                    log.info("OIDC discovery document built for key {}", keyId);
+                }
+            }
+        }
+        return current;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onClientChanged(ClientChangedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onResync(CacheResyncEvent event) {
+        invalidate();
+    }
+
+    // Registered scopes may have changed. Taking the lock means a build that read
+    // the old scopes is finished, and cleared, before the next request rebuilds
+    private synchronized void invalidate() {
+        document = null;
+    }
+
+    private Document build(String keyId) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("issuer", issuer);
+        metadata.put("authorization_endpoint", baseUrl + "/oauth2/authorize");
+        metadata.put("token_endpoint", baseUrl + "/oauth2/token");
+        metadata.put("userinfo_endpoint", baseUrl + "/oauth2/userinfo");
+        metadata.put("jwks_uri", baseUrl + "/.well-known/jwks.json");
+        metadata.put("response_types_supported", List.of("code"));
+        metadata.put("grant_types_supported", List.of(
+            AuthorizationCodeService.GRANT_TYPE, TokenExchangeService.GRANT_TYPE));
+        metadata.put("token_endpoint_auth_methods_supported", List.of("client_secret_post", "none"));
+        metadata.put("code_challenge_methods_supported", List.of("S256"));
+        Set<String> scopes = new TreeSet<>(OAuthClient.DEFAULT_SCOPES);
+        scopes.addAll(oauthClientRepository.findActiveScopes());
+        metadata.put("scopes_supported", List.copyOf(scopes));
+
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(metadata);
+            String etag = etag(json);
+            // Each encoding is its own representation and needs its own strong validator
+            String gzipEtag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+            return new Document(keyId, json, gzip(json), etag, gzipEtag);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize discovery document", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etag(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 22) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record Document(String keyId, byte[] json, byte[] gzip, String etag, String gzipEtag) {}
+}
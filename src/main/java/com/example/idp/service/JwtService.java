@@ -2,7 +2,11 @@ package com.example.idp.service;
 
 import com.example.idp.entity.User;
 import com.example.idp.entity.UserRole;
+import com.example.idp.oauth2.ClaimProfile;
 import com.example.idp.repository.UserRoleRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
@@ -10,9 +14,15 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
+import java.security.Signature;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,35 +38,93 @@ public class JwtService {
     @Value("${jwt.issuer:idp-service}")
     private String issuer;
     
+    // Audience of the IdP's own access tokens; exchanged tokens name their target instead
+    @Value("${jwt.audience:${jwt.issuer:idp-service}}")
+    private String audience;
+    
+    @Value("${jwt.verified-cache.max-size:100000}")
+    private long verifiedCacheMaxSize;
+    
     private final UserRoleRepository userRoleRepository;
+    private final ClaimProfileService claimProfileService;
     private KeyPair keyPair;
     private String keyId = "idp-key-1";
+    private String encodedHeader;
+    
+    // Access tokens already verified on this node, keyed by their SHA-256 digest so
+    // the cache holds no usable bearer tokens; entries expire with the token itself
+    private Cache<String, Claims> verifiedAccessTokens;
     
-    public JwtService(UserRoleRepository userRoleRepository) {
+    public JwtService(UserRoleRepository userRoleRepository, ClaimProfileService claimProfileService) {
         this.userRoleRepository = userRoleRepository;
+        this.claimProfileService = claimProfileService;
     }
     
     @PostConstruct
     public void init() {
         // Generate RSA key pair for JWT signing
         this.keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        
+        // The JWS header only depends on the key, so it is encoded once
+        String header = "{\"kid\":\"" + keyId + "\",\"typ\":\"JWT\",\"alg\":\"RS256\"}";
+        this.encodedHeader = base64Url(header.getBytes(StandardCharsets.UTF_8));
         log.info("JWT RSA key pair generated successfully");
+        
+        this.verifiedAccessTokens = Caffeine.newBuilder()
+            .maximumSize(verifiedCacheMaxSize)
+            .expireAfter(new Expiry<String, Claims>() {
+                @Override
+                public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                    long remainingMillis = claims.getExpiration().getTime() - System.currentTimeMillis();
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                }
+                
+                @Override
+                public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+                
+                @Override
+                public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
     }
     
     public String generateAccessToken(User user, String clientId) {
+        return generateAccessToken(user, null, clientId);
+    }
+    
+    /**
+     * Same as {@link #generateAccessToken(User, String)} for callers that already
+     * hold the user's roles; null roles are queried if the profile needs them.
+     */
+    public String generateAccessToken(User user, List<String> knownRoles, String clientId) {
+        return generateAccessToken(user, knownRoles, clientId, null);
+    }
+    
+    /**
+     * Access token limited to the scope the user granted, e.g. on an authorization
+     * code; token exchange narrows to this claim instead of the client's scopes.
+     */
+    public String generateScopedAccessToken(User user, String clientId, String scope) {
+        return generateAccessToken(user, null, clientId, scope);
+    }
+    
+    private String generateAccessToken(User user, List<String> knownRoles, String clientId, String scope) {
         try {
-            Map<String, Object> claims = new HashMap<>();
-            claims.put("sub", user.getId().toString());
-            claims.put("email", user.getEmail());
-            claims.put("name", user.getFullName());
-            claims.put("email_verified", user.getEmailVerified());
-            claims.put("client_id", clientId);
+            // Claims are limited to what the client's profile asks for; roles are
+            // only queried when the profile includes them
+            ClaimProfile profile = claimProfileService.profileFor(clientId);
+            List<String> roles = !profile.includesRoles() ? Collections.emptyList()
+                : knownRoles != null ? knownRoles
+                : getRolesForUserSafely(user);
             
-            // Extract roles safely without accessing the Hibernate collection
-            List<String> roles = getRolesForUserSafely(user);
-            claims.put("roles", roles);
+            long now = System.currentTimeMillis() / 1000;
+            String payload = profile.render(user, clientId, roles, scope, issuer, audience, now, now + accessTokenExpiration);
             
-            return createToken(claims, accessTokenExpiration, "access");
+            return sign(payload);
             
         } catch (Exception e) {
             log.error("Failed to generate JWT token for user: {}", user.getId(), e);
@@ -94,10 +162,32 @@ public class JwtService {
         return createToken(claims, refreshTokenExpiration, "refresh");
     }
     
+    public String generateExchangedToken(Claims subjectClaims, String audience, String scope,
+                                         String clientId, boolean includeRoles, Date expiryDate) {
+        // Downscoped token for a single downstream audience: identity, and roles only
+        // when the audience's profile asks for them; never outliving the subject token
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("sub", subjectClaims.getSubject());
+        claims.put("aud", audience);
+        claims.put("client_id", clientId);
+        if (scope != null && !scope.isEmpty()) {
+            claims.put("scope", scope);
+        }
+        if (includeRoles && subjectClaims.get("roles") != null) {
+            claims.put("roles", subjectClaims.get("roles"));
+        }
+        
+        return createToken(claims, new Date(), expiryDate, "access");
+    }
+    
     private String createToken(Map<String, Object> claims, long expiration, String tokenType) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration * 1000);
         
+        return createToken(claims, now, expiryDate, tokenType);
+    }
+    
+    private String createToken(Map<String, Object> claims, Date now, Date expiryDate, String tokenType) {
         return Jwts.builder()
                 .setHeaderParam("kid", keyId)
                 .setHeaderParam("typ", "JWT")
@@ -110,6 +200,28 @@ public class JwtService {
                 .compact();
     }
     
+    private String sign(String payloadJson) throws GeneralSecurityException {
+        String signingInput = encodedHeader + "." + base64Url(payloadJson.getBytes(StandardCharsets.UTF_8));
+        
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+        
+        return signingInput + "." + base64Url(signature.sign());
+    }
+    
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+    
+    private static String digest(String token) {
+        try {
+            return base64Url(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
     public Claims validateToken(String token) {
         try {
             return Jwts.parserBuilder()
@@ -135,6 +247,35 @@ public class JwtService {
         }
     }
     
+    /**
+     * Validates an access token issued by this IdP for itself, parsing and verifying
+     * its signature only the first time this node sees it. Exchanged tokens, which
+     * carry another audience, are rejected. Throws like {@link #validateToken} for
+     * invalid tokens.
+     */
+    public Claims validateAccessToken(String token) {
+        String key = digest(token);
+        Claims claims = verifiedAccessTokens.getIfPresent(key);
+        if (claims != null) {
+            return claims;
+        }
+        
+        claims = validateToken(token);
+        if (!"access".equals(claims.get("token_type", String.class))) {
+            throw new RuntimeException("Not an access token");
+        }
+        if (!issuer.equals(claims.getIssuer())) {
+            throw new RuntimeException("Token issuer mismatch");
+        }
+        if (!audience.equals(claims.getAudience())) {
+            throw new RuntimeException("Token audience mismatch");
+        }
+        if (claims.getExpiration() != null) {
+            verifiedAccessTokens.put(key, claims);
+        }
+        return claims;
+    }
+    
     public Long getUserIdFromToken(String token) {
         Claims claims = validateToken(token);
         return Long.parseLong(claims.getSubject());
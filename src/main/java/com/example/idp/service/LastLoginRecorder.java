@@ -0,0 +1,118 @@
+package com.example.idp.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind for users.last_login_at. Logins only update an in-memory map of
+ * user id to latest login time; a background task writes the map out as one
+ * batched UPDATE per flush, so a user logging in repeatedly costs one row write
+ * per interval. A crash loses at most one interval of timestamps. Writes use the
+ * batch pool.
+ */
+@Service
+@Slf4j
+public class LastLoginRecorder {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LastLoginRecorder(@Qualifier("batchDataSource") DataSource batchDataSource) {
+        this.jdbcTemplate = new JdbcTemplate(batchDataSource);
+    }
+
+    @Value("${users.last-login.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    @Value("${users.last-login.batch-size:500}")
+    private int batchSize;
+
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "last-login-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public void record(Long userId) {
+        if (userId != null) {
+            record(userId, LocalDateTime.now());
+        }
+    }
+
+    private void record(Long userId, LocalDateTime loginAt) {
+        pending.merge(userId, loginAt, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Entries recorded while draining stay in the map for the next flush
+        List<Map.Entry<Long, LocalDateTime>> batch = new ArrayList<>();
+        for (Long userId : pending.keySet()) {
+            LocalDateTime loginAt = pending.remove(userId);
+            if (loginAt != null) {
+                batch.add(Map.entry(userId, loginAt));
+            }
+        }
+
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            List<Map.Entry<Long, LocalDateTime>> chunk = batch.subList(from, Math.min(from + batchSize, batch.size()));
+            try {
+                write(chunk);
+            } catch (Exception e) {
+                log.warn("Failed to write last login for {} users, retrying next flush: {}", chunk.size(), e.getMessage());
+                chunk.forEach(entry -> record(entry.getKey(), entry.getValue()));
+            }
+        }
+        log.debug("Flushed last login for {} users", batch.size());
+    }
+
+    private void write(List<Map.Entry<Long, LocalDateTime>> chunk) {
+        StringBuilder sql = new StringBuilder("UPDATE users AS u SET last_login_at = v.last_login_at FROM (VALUES ");
+        Object[] args = new Object[chunk.size() * 2];
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?::bigint, ?::timestamp)");
+            args[i * 2] = chunk.get(i).getKey();
+            args[i * 2 + 1] = chunk.get(i).getValue();
+        }
+        // Never move the timestamp backwards when another node flushed a later login
+        sql.append(") AS v(id, last_login_at) WHERE u.id = v.id")
+            .append(" AND (u.last_login_at IS NULL OR u.last_login_at < v.last_login_at)");
+
+        jdbcTemplate.update(sql.toString(), args);
+    }
+}
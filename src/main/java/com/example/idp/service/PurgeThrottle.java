@@ -0,0 +1,45 @@
+package com.example.idp.service;
+
+import com.example.idp.config.ReplicaLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Back-pressure for background deletes: they give way while the replica falls
+ * behind or interactive traffic is waiting for connections.
+ */
+@Component
+public class PurgeThrottle {
+
+    private final HikariDataSource authDataSource;
+    private final HikariDataSource batchDataSource;
+    private final ObjectProvider<ReplicaLagMonitor> lagMonitor;
+
+    public PurgeThrottle(@Qualifier("authDataSource") HikariDataSource authDataSource,
+                         @Qualifier("batchDataSource") HikariDataSource batchDataSource,
+                         ObjectProvider<ReplicaLagMonitor> lagMonitor) {
+        this.authDataSource = authDataSource;
+        this.batchDataSource = batchDataSource;
+        this.lagMonitor = lagMonitor;
+    }
+
+    // Why the next chunk should wait, or null to go ahead
+    String reason() {
+        ReplicaLagMonitor monitor = lagMonitor.getIfAvailable();
+        if (monitor != null && !monitor.isReplicaUsable()) {
+            return "replica-lag";
+        }
+        if (hasWaiters(authDataSource) || hasWaiters(batchDataSource)) {
+            return "pool-pressure";
+        }
+        return null;
+    }
+
+    private static boolean hasWaiters(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return pool != null && pool.getThreadsAwaitingConnection() > 0;
+    }
+}
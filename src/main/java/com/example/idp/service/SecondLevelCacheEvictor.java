@@ -0,0 +1,52 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.repository.OAuthClientRepository;
+import com.example.idp.repository.UserRoleRepository;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Hibernate keeps its second-level cache current for writes made through the
+ * session, but not for native statements (the social login upsert adds roles) or
+ * for writes on other nodes. Those arrive here as change events.
+ *
+ * The query cache is invalidated per table anyway, so whole regions are dropped.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SecondLevelCacheEvictor {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        cache().evictQueryRegion(UserRoleRepository.ROLE_NAMES_REGION);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onClientChanged(ClientChangedEvent event) {
+        Cache cache = cache();
+        cache.evictEntityData(OAuthClient.class);
+        cache.evictCollectionData(OAuthClient.class.getName() + ".redirectUris");
+        cache.evictCollectionData(OAuthClient.class.getName() + ".scopes");
+        cache.evictQueryRegion(OAuthClientRepository.ACTIVE_BY_CLIENT_ID_REGION);
+    }
+
+    @EventListener
+    public void onResync(CacheResyncEvent event) {
+        log.info("Clearing second-level cache");
+        cache().evictAllRegions();
+    }
+
+    private Cache cache() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+}
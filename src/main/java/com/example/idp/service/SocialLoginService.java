@@ -0,0 +1,162 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.User;
+import com.example.idp.upstream.IdTokenVerifier;
+import com.example.idp.upstream.ProviderIdentity;
+import com.example.idp.upstream.UpstreamHttpClients;
+import com.example.idp.upstream.UpstreamProvider;
+import com.example.idp.upstream.UpstreamUnavailableException;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The social-login pipeline shared by every upstream provider: authorization URL,
+ * code exchange, identity resolution (verified ID token, or userinfo as a
+ * fallback) and local user registration.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SocialLoginService {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT =
+        new ParameterizedTypeReference<>() {};
+
+    private final UpstreamHttpClients upstreamHttpClients;
+    private final IdTokenVerifier idTokenVerifier;
+    private final UserService userService;
+    private final JwtService jwtService;
+
+    public String authorizationUrl(UpstreamProvider provider, String state) {
+        return UriComponentsBuilder.fromUriString(provider.authorizationUri())
+            .queryParam("response_type", "code")
+            .queryParam("client_id", provider.clientId())
+            .queryParam("redirect_uri", provider.redirectUri())
+            .queryParam("scope", provider.scope())
+            .queryParam("state", state)
+            .encode()
+            .build()
+            .toUriString();
+    }
+
+    public Map<String, Object> exchangeCode(UpstreamProvider provider, String code) {
+        String authorizationCode = provider.decodeCode() ? URLDecoder.decode(code, StandardCharsets.UTF_8) : code;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "authorization_code");
+        form.add("code", authorizationCode);
+        form.add("redirect_uri", provider.redirectUri());
+        form.add("client_id", provider.clientId());
+        form.add("client_secret", provider.clientSecret());
+
+        try {
+            log.info("Exchanging {} code for access token", provider.id());
+            ResponseEntity<Map<String, Object>> response = upstreamHttpClients.forProvider(provider.id())
+                .exchange(provider.tokenUri(), HttpMethod.POST, new HttpEntity<>(form, headers), JSON_OBJECT);
+
+            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+                throw new RuntimeException(provider.displayName() + " token exchange failed: " + response.getStatusCode());
+            }
+            return response.getBody();
+
+        } catch (UpstreamUnavailableException | HttpServerErrorException | ResourceAccessException e) {
+            // Provider-side failures keep their type so callers can tell them from bad requests
+            throw e;
+        } catch (HttpStatusCodeException e) {
+            log.error("{} token exchange HTTP error: {} - {}", provider.id(), e.getStatusCode(), e.getResponseBodyAsString());
+            throw new RuntimeException(provider.displayName() + " authentication failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Takes the identity from a locally verified ID token when the provider sent
+     * one; only providers without ID tokens cost a userinfo round-trip.
+     */
+    public ProviderIdentity resolveIdentity(UpstreamProvider provider, Map<String, Object> tokenResponse) {
+        String idToken = (String) tokenResponse.get("id_token");
+        if (idToken != null && provider.jwksUri() != null) {
+            Claims claims = idTokenVerifier.verify(provider.id(), provider.jwksUri(), idToken,
+                provider.issuers(), provider.clientId());
+            return toIdentity(claims.getSubject(), claims);
+        }
+
+        log.info("Fetching {} user info", provider.id());
+        Map<String, Object> userInfo = fetchUserInfo(provider, (String) tokenResponse.get("access_token"));
+        return toIdentity((String) userInfo.get("sub"), userInfo);
+    }
+
+    public LoginResult completeLogin(UpstreamProvider provider, ProviderIdentity identity, String clientId) {
+        if (identity.email() == null) {
+            throw new RuntimeException("Invalid user information received from " + provider.displayName());
+        }
+
+        log.info("Registering {} OAuth user: {}", provider.id(), identity.email());
+        User user = userService.registerProviderUser(provider.id(), identity);
+        if (!user.canSignIn()) {
+            throw new DisabledException("Account is deactivated");
+        }
+
+        log.info("Generating JWT token for {} user: {}", provider.id(), user.getId());
+        return new LoginResult(user, jwtService.generateAccessToken(user, clientId));
+    }
+
+    private Map<String, Object> fetchUserInfo(UpstreamProvider provider, String accessToken) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+
+        try {
+            ResponseEntity<Map<String, Object>> response = upstreamHttpClients.forProvider(provider.id())
+                .exchange(provider.userInfoUri(), HttpMethod.GET, new HttpEntity<>(headers), JSON_OBJECT);
+
+            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+                throw new RuntimeException("Failed to get user info from " + provider.displayName() + ": " + response.getStatusCode());
+            }
+            return response.getBody();
+
+        } catch (UpstreamUnavailableException | HttpServerErrorException | ResourceAccessException e) {
+            // Provider-side failures keep their type so callers can tell them from bad requests
+            throw e;
+        } catch (HttpStatusCodeException e) {
+            log.error("Failed to get {} user info: {}", provider.id(), e.getStatusCode());
+            throw new RuntimeException("Failed to retrieve user information from " + provider.displayName());
+        }
+    }
+
+    private static ProviderIdentity toIdentity(String subject, Map<String, Object> claims) {
+        Object emailVerified = claims.get("email_verified");
+        return new ProviderIdentity(
+            subject,
+            (String) claims.get("email"),
+            Boolean.TRUE.equals(emailVerified) || "true".equals(emailVerified),
+            (String) claims.get("given_name"),
+            (String) claims.get("family_name"),
+            (String) claims.get("name"),
+            (String) claims.get("picture"));
+    }
+
+    public record LoginResult(User user, String accessToken) {}
+}
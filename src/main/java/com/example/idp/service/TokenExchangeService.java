@@ -0,0 +1,278 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.repository.OAuthClientRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RFC 8693 token exchange. The requesting client authenticates with its secret,
+ * and the subject must be an active user holding an IdP access token. The issued
+ * scope never exceeds what both the subject token and the audience allow.
+ *
+ * The downscoped token minted for a subject is cached per (subject token digest,
+ * client, audience, scope), so repeated exchanges through the gateway reuse the
+ * same signed token until shortly before it expires. Verified client secrets are
+ * remembered briefly so the gateway does not pay for a bcrypt check per exchange.
+ */
+@Service
+@Slf4j
+public class TokenExchangeService {
+
+    public static final String GRANT_TYPE = "urn:ietf:params:oauth:grant-type:token-exchange";
+    public static final String ACCESS_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:access_token";
+    public static final String JWT_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:jwt";
+
+    private static final Duration CLIENT_SECRET_TTL = Duration.ofSeconds(60);
+
+    private final JwtService jwtService;
+    private final OAuthClientRepository oauthClientRepository;
+    private final AuthenticationService authenticationService;
+    private final ClaimProfileService claimProfileService;
+    private final UserInfoService userInfoService;
+
+    @Value("${jwt.token-exchange.expiration:300}") // 5 minutes default
+    private long exchangedTokenExpiration;
+
+    @Value("${jwt.token-exchange.reuse-skew:30}") // stop reusing 30 seconds before expiry
+    private long reuseSkewSeconds;
+
+    @Value("${jwt.token-exchange.cache-size:10000}")
+    private int maxCachedTokens;
+
+    // Entries expire reuse-skew before the token they hold
+    private Cache<CacheKey, CachedToken> cache;
+
+    // client_id -> digest of the secret last verified for it
+    private final Cache<String, String> verifiedClientSecrets = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .expireAfterWrite(CLIENT_SECRET_TTL)
+        .build();
+
+    public TokenExchangeService(JwtService jwtService,
+                                OAuthClientRepository oauthClientRepository,
+                                AuthenticationService authenticationService,
+                                ClaimProfileService claimProfileService,
+                                UserInfoService userInfoService) {
+        this.jwtService = jwtService;
+        this.oauthClientRepository = oauthClientRepository;
+        this.authenticationService = authenticationService;
+        this.claimProfileService = claimProfileService;
+        this.userInfoService = userInfoService;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxCachedTokens)
+            .expireAfter(new Expiry<CacheKey, CachedToken>() {
+                @Override
+                public long expireAfterCreate(CacheKey key, CachedToken token, long currentTime) {
+                    long reusableMillis = token.expiresAt() - reuseSkewSeconds * 1000 - System.currentTimeMillis();
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(reusableMillis, 0));
+                }
+
+                @Override
+                public long expireAfterUpdate(CacheKey key, CachedToken token, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, token, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(CacheKey key, CachedToken token, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    }
+
+    public TokenExchangeResult exchange(String subjectToken, String subjectTokenType, String clientId,
+                                        String clientSecret, String audience, String requestedScope) {
+        if (subjectToken == null || subjectToken.isBlank()) {
+            return TokenExchangeResult.failure("invalid_request", "subject_token is required");
+        }
+        if (subjectTokenType != null && !ACCESS_TOKEN_TYPE.equals(subjectTokenType)
+                && !JWT_TOKEN_TYPE.equals(subjectTokenType)) {
+            return TokenExchangeResult.failure("invalid_request", "Unsupported subject_token_type");
+        }
+        if (clientId == null || clientId.isBlank() || clientSecret == null || clientSecret.isEmpty()) {
+            return TokenExchangeResult.failure("invalid_client", "client_id and client_secret are required");
+        }
+        if (audience == null || audience.isBlank()) {
+            return TokenExchangeResult.failure("invalid_target", "audience is required");
+        }
+
+        if (!authenticateClient(clientId, clientSecret)) {
+            return TokenExchangeResult.failure("invalid_client", "Client authentication failed");
+        }
+
+        Optional<OAuthClient> target = oauthClientRepository.findByClientIdAndIsActiveTrue(audience);
+        if (target.isEmpty()) {
+            return TokenExchangeResult.failure("invalid_target", "Unknown audience: " + audience);
+        }
+
+        Claims subject;
+        try {
+            subject = jwtService.validateAccessToken(subjectToken);
+        } catch (RuntimeException e) {
+            return TokenExchangeResult.failure("invalid_grant", "Subject token is invalid: " + e.getMessage());
+        }
+        if (!userInfoService.isActive(Long.parseLong(subject.getSubject()))) {
+            return TokenExchangeResult.failure("invalid_grant", "Subject is not an active user");
+        }
+
+        String scope = normalizeScope(requestedScope);
+        CacheKey key = new CacheKey(digest(subjectToken), clientId, audience, scope);
+        long now = System.currentTimeMillis();
+
+        // A hit was issued for this exact subject token, client, audience and scope,
+        // and the cached token never outlives the subject token
+        CachedToken cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return TokenExchangeResult.success(cached.token(), cached.expiresInSeconds(now), cached.scope());
+        }
+
+        // Downscoping only: the issued scope is bounded by the subject token and the audience
+        Set<String> allowed = subjectScopes(subject);
+        allowed.removeIf(s -> !target.get().hasScopeAccess(s));
+        if (scope.isEmpty()) {
+            scope = String.join(" ", allowed);
+        } else {
+            for (String s : scope.split(" ")) {
+                if (!allowed.contains(s)) {
+                    return TokenExchangeResult.failure("invalid_scope", "Scope not granted for audience: " + s);
+                }
+            }
+        }
+
+        boolean includeRoles = claimProfileService.profileFor(audience).includesRoles();
+        long expiresAt = Math.min(now + exchangedTokenExpiration * 1000, subject.getExpiration().getTime());
+        String token = jwtService.generateExchangedToken(
+            subject, audience, scope, clientId, includeRoles, new Date(expiresAt));
+
+        CachedToken issued = new CachedToken(token, scope, expiresAt);
+        cache.put(key, issued);
+
+        log.debug("Exchanged token for subject {} issued to audience {} via client {}",
+            subject.getSubject(), audience, clientId);
+        return TokenExchangeResult.success(token, issued.expiresInSeconds(now), scope);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onClientChanged(ClientChangedEvent event) {
+        if (event.clientId() != null) {
+            verifiedClientSecrets.invalidate(event.clientId());
+        }
+    }
+
+    @EventListener
+    public void onResync(CacheResyncEvent event) {
+        verifiedClientSecrets.invalidateAll();
+    }
+
+    private boolean authenticateClient(String clientId, String clientSecret) {
+        String secretDigest = digest(clientSecret);
+        String verified = verifiedClientSecrets.getIfPresent(clientId);
+        if (verified != null && MessageDigest.isEqual(
+                verified.getBytes(StandardCharsets.US_ASCII), secretDigest.getBytes(StandardCharsets.US_ASCII))) {
+            return true;
+        }
+        if (!authenticationService.validateClientCredentials(clientId, clientSecret)) {
+            return false;
+        }
+        verifiedClientSecrets.put(clientId, secretDigest);
+        return true;
+    }
+
+    // The subject token's scope claim, or else the scopes registered for the client it was issued to
+    private Set<String> subjectScopes(Claims subject) {
+        String scope = subject.get("scope", String.class);
+        if (scope != null) {
+            String normalized = normalizeScope(scope);
+            return normalized.isEmpty() ? new TreeSet<>() : new TreeSet<>(Arrays.asList(normalized.split(" ")));
+        }
+        String subjectClientId = subject.get("client_id", String.class);
+        Set<String> scopes = new TreeSet<>();
+        if (subjectClientId != null) {
+            oauthClientRepository.findByClientIdAndIsActiveTrue(subjectClientId)
+                .map(OAuthClient::getScopes)
+                .ifPresent(scopes::addAll);
+        }
+        return scopes;
+    }
+
+    private String normalizeScope(String scope) {
+        if (scope == null || scope.isBlank()) {
+            return "";
+        }
+        // Sorted and de-duplicated so "b a" and "a b" share a cache entry
+        return String.join(" ", new TreeSet<>(Arrays.asList(scope.trim().split("\\s+"))));
+    }
+
+    private String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record CacheKey(String subjectDigest, String clientId, String audience, String scope) {}
+
+    private record CachedToken(String token, String scope, long expiresAt) {
+        long expiresInSeconds(long now) {
+            return Math.max(0, (expiresAt - now) / 1000);
+        }
+    }
+
+    // Result class
+    public static class TokenExchangeResult {
+        private final boolean success;
+        private final String error;
+        private final String errorDescription;
+        private final String accessToken;
+        private final long expiresIn;
+        private final String scope;
+
+        private TokenExchangeResult(boolean success, String error, String errorDescription,
+                                    String accessToken, long expiresIn, String scope) {
+            this.success = success;
+            this.error = error;
+            this.errorDescription = errorDescription;
+            this.accessToken = accessToken;
+            this.expiresIn = expiresIn;
+            this.scope = scope;
+        }
+
+        public static TokenExchangeResult success(String accessToken, long expiresIn, String scope) {
+            return new TokenExchangeResult(true, null, null, accessToken, expiresIn, scope);
+        }
+
+        public static TokenExchangeResult failure(String error, String errorDescription) {
+            return new TokenExchangeResult(false, error, errorDescription, null, 0, null);
+        }
+
+        // Getters
+        public boolean isSuccess() { return success; }
+        public String getError() { return error; }
+        public String getErrorDescription() { return errorDescription; }
+        public String getAccessToken() { return accessToken; }
+        public long getExpiresIn() { return expiresIn; }
+        public String getScope() { return scope; }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.idp.service;
+
+/**
+ * Published by {@link UserService} whenever a user's profile, credentials, status or
+ * roles change. Per-user caches drop their entry once the change has committed;
+ * a cluster transport can relay the event so other nodes do the same.
+ */
+public record UserChangedEvent(Long userId) {}
@@ -0,0 +1,160 @@
+package com.example.idp.service;
+
+import com.example.idp.repository.LoginCredentials;
+import com.example.idp.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Near-cache of login credential snapshots keyed by lowercased email. Bounded by an
+ * estimate of the snapshots' size in bytes rather than entry count; entries are
+ * dropped after every committed {@link UserChangedEvent} and the TTL bounds
+ * staleness for anything missed. Hit, miss and eviction counts are published as
+ * {@code cache.*} metrics tagged {@code cache=user.credentials}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserCredentialCache {
+
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${users.credential-cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    @Value("${users.credential-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    private Cache<String, Snapshot> snapshots;
+
+    // Reverse index so invalidations that only carry a user id can find the entry
+    private final Map<Long, String> emailsById = new ConcurrentHashMap<>();
+
+    // Bumped on every invalidation, before anything is removed; a load that raced one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        snapshots = Caffeine.newBuilder()
+            .maximumWeight(maxWeightBytes)
+            .weigher((String email, Snapshot snapshot) -> snapshot.weight())
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .removalListener((String email, Snapshot snapshot, RemovalCause cause) -> {
+                if (snapshot != null) {
+                    emailsById.remove(snapshot.getId(), email);
+                }
+            })
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, "user.credentials");
+    }
+
+    public Optional<LoginCredentials> get(String email) {
+        String key = email.toLowerCase();
+        Snapshot snapshot = snapshots.getIfPresent(key);
+        if (snapshot != null) {
+            return Optional.of(snapshot);
+        }
+
+        long loadedAt = generation.get();
+        Optional<LoginCredentials> loaded = userRepository.findLoginCredentialsByEmail(key);
+        if (loaded.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Snapshot fresh = Snapshot.of(loaded.get());
+        if (generation.get() == loadedAt) {
+            // Index first so a concurrent evictUser can find the key, then recheck under
+            // the entry's lock: an invalidation bumps the generation before it removes,
+            // so it either sees this entry or this compute sees the new generation
+            emailsById.put(fresh.getId(), key);
+            snapshots.asMap().compute(key, (k, current) -> generation.get() == loadedAt ? fresh : current);
+        }
+        return Optional.of(fresh);
+    }
+
+    public void evictUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        generation.incrementAndGet();
+        String email = emailsById.remove(userId);
+        if (email != null) {
+            snapshots.invalidate(email);
+        }
+    }
+
+    public void evictAll() {
+        generation.incrementAndGet();
+        snapshots.invalidateAll();
+        emailsById.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        evictUser(event.userId());
+    }
+
+    @EventListener
+    public void onResync(CacheResyncEvent event) {
+        evictAll();
+    }
+
+    /**
+     * Immutable copy of the login read model; the projection itself is backed by the
+     * query result and is not meant to outlive it.
+     */
+    public record Snapshot(Long id, String email, String passwordHash, String firstName, String lastName,
+                           String profilePictureUrl, Boolean isActive, Boolean emailVerified, String roles)
+            implements LoginCredentials {
+
+        static Snapshot of(LoginCredentials credentials) {
+            return new Snapshot(credentials.getId(), credentials.getEmail(), credentials.getPasswordHash(),
+                credentials.getFirstName(), credentials.getLastName(), credentials.getProfilePictureUrl(),
+                credentials.getIsActive(), credentials.getEmailVerified(), credentials.getRoles());
+        }
+
+        // Rough retained size: object headers plus one byte per Latin-1 character
+        int weight() {
+            return 96 + length(email) + length(passwordHash) + length(firstName) + length(lastName)
+                + length(profilePictureUrl) + length(roles);
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : 24 + value.length();
+        }
+
+        @Override public Long getId() { return id; }
+        @Override public String getEmail() { return email; }
+        @Override public String getPasswordHash() { return passwordHash; }
+        @Override public String getFirstName() { return firstName; }
+        @Override public String getLastName() { return lastName; }
+        @Override public String getProfilePictureUrl() { return profilePictureUrl; }
+        @Override public Boolean getIsActive() { return isActive; }
+        @Override public Boolean getEmailVerified() { return emailVerified; }
+        @Override public String getRoles() { return roles; }
+
+        // Keep the password hash out of logs
+        @Override
+        public String toString() {
+            return "Snapshot[id=" + id + ", email=" + email + ", roles=" + roles + "]";
+        }
+    }
+}
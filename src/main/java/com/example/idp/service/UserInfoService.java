@@ -0,0 +1,154 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.User;
+import com.example.idp.repository.UserRepository;
+import com.example.idp.repository.UserRoleRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * OIDC userinfo claims, cached per user as a pre-serialized snapshot. A user's
+ * snapshot is evicted after every committed {@link UserChangedEvent}; the TTL only
+ * bounds staleness for changes made by other nodes. Deactivation is not left to
+ * the TTL: the snapshot records whether the user was active, and a hit older than
+ * the active-check interval re-reads just that flag.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserInfoService {
+
+    private final UserRepository userRepository;
+    private final UserRoleRepository userRoleRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${userinfo.cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${userinfo.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${userinfo.cache.active-check-seconds:30}")
+    private long activeCheckSeconds;
+
+    private Cache<Long, Snapshot> snapshots;
+
+    @PostConstruct
+    public void init() {
+        snapshots = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .build();
+    }
+
+    /**
+     * Returns the user's claims, or empty if the user does not exist or is inactive.
+     */
+    public Optional<Snapshot> getSnapshot(Long userId) {
+        long now = System.currentTimeMillis();
+        Snapshot snapshot = snapshots.getIfPresent(userId);
+        if (snapshot != null && now - snapshot.checkedAt() > activeCheckSeconds * 1000) {
+            snapshot = recheckActive(userId, snapshot, now);
+        }
+        if (snapshot == null) {
+            Optional<User> userOpt = userRepository.findById(userId);
+            if (userOpt.isEmpty()) {
+                return Optional.empty();
+            }
+            snapshot = Boolean.TRUE.equals(userOpt.get().getIsActive())
+                ? buildSnapshot(userOpt.get(), userRoleRepository.findRoleNamesByUserId(userId), now)
+                : Snapshot.inactive(now);
+            snapshots.put(userId, snapshot);
+        }
+        return snapshot.active() ? Optional.of(snapshot) : Optional.empty();
+    }
+
+    // Keeps the claims while the flag is unchanged; anything else is rebuilt from the row
+    private Snapshot recheckActive(Long userId, Snapshot snapshot, long now) {
+        boolean active = userRepository.findIsActiveById(userId).orElse(false);
+        if (active != snapshot.active()) {
+            snapshots.invalidate(userId);
+            return null;
+        }
+        Snapshot rechecked = snapshot.recheckedAt(now);
+        snapshots.asMap().replace(userId, snapshot, rechecked);
+        return rechecked;
+    }
+
+    /**
+     * Whether the user exists and is active, answered from the snapshot cache.
+     */
+    public boolean isActive(Long userId) {
+        return getSnapshot(userId).isPresent();
+    }
+
+    public void evict(Long userId) {
+        if (userId != null) {
+            snapshots.invalidate(userId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        evict(event.userId());
+    }
+
+    @EventListener
+    public void onResync(CacheResyncEvent event) {
+        snapshots.invalidateAll();
+    }
+
+    private Snapshot buildSnapshot(User user, List<String> roles, long now) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", user.getId().toString());
+        claims.put("email", user.getEmail());
+        claims.put("email_verified", Boolean.TRUE.equals(user.getEmailVerified()));
+        claims.put("name", user.getFullName());
+        claims.put("given_name", user.getFirstName());
+        claims.put("family_name", user.getLastName());
+        claims.put("picture", user.getProfilePictureUrl());
+        claims.put("roles", roles);
+
+        long updatedAt = user.getUpdatedAt() != null
+            ? user.getUpdatedAt().toEpochSecond(ZoneOffset.UTC)
+            : 0;
+        claims.put("updated_at", updatedAt);
+
+        // updated_at does not move when only roles change, so they are folded into the tag
+        String etag = "\"" + user.getId() + "-" + Long.toHexString(updatedAt)
+            + "-" + Integer.toHexString(roles.hashCode()) + "\"";
+
+        try {
+            return new Snapshot(objectMapper.writeValueAsBytes(claims), etag, true, now);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize userinfo for user " + user.getId(), e);
+        }
+    }
+
+    public record Snapshot(byte[] body, String etag, boolean active, long checkedAt) {
+
+        static Snapshot inactive(long checkedAt) {
+            return new Snapshot(null, null, false, checkedAt);
+        }
+
+        Snapshot recheckedAt(long now) {
+            return new Snapshot(body, etag, active, now);
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.example.idp.service;
 
 import com.example.idp.entity.User;
 import com.example.idp.entity.UserRole;
+import com.example.idp.repository.LoginCredentials;
 import com.example.idp.repository.UserRepository;
 import com.example.idp.repository.UserRoleRepository;
+import com.example.idp.upstream.ProviderIdentity;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,6 +29,14 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
     private final AuditService auditService;
+    private final UserCredentialCache userCredentialCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LastLoginRecorder lastLoginRecorder;
+    private final DeletionReaper deletionReaper;
+    
+    // Provider ids of the built-in social logins, as stored in user_identities
+    private static final String LINKEDIN = "linkedin";
+    private static final String GOOGLE = "google";
     
     @Transactional
     public User registerUser(String email, String password, String firstName, String lastName, String role) {
@@ -82,57 +94,13 @@ public class UserService {
         try {
             log.info("Processing LinkedIn OAuth for email: {}, linkedinId: {}", email, linkedinId);
             
-            Optional<User> existingUser = userRepository.findByEmail(email.toLowerCase());
-            
-            if (existingUser.isPresent()) {
-                User user = existingUser.get();
-                log.info("Found existing user: {}", user.getId());
-                
-                // Update LinkedIn info if not set
-                if (user.getLinkedinId() == null && linkedinId != null) {
-                    user.setLinkedinId(linkedinId);
-                    if (user.getProfilePictureUrl() == null) {
-                        user.setProfilePictureUrl(profilePictureUrl);
-                    }
-                }
-                
-                user.setLastLoginAt(LocalDateTime.now());
-                User savedUser = userRepository.save(user);
-                
-                // Check and add USER role if missing
-                ensureUserRole(savedUser);
-                
-                log.info("Updated existing user with LinkedIn OAuth: {}", savedUser.getId());
-                return savedUser;
-            }
-            
-            // Check if LinkedIn ID already exists (different email)
-            Optional<User> linkedinUser = userRepository.findByLinkedinId(linkedinId);
-            if (linkedinUser.isPresent()) {
-                log.info("Found user with existing LinkedIn ID: {}", linkedinId);
-                return linkedinUser.get();
-            }
-            
-            // Create new user
-            User newUser = User.builder()
-                    .email(email.toLowerCase())
-                    .firstName(firstName)
-                    .lastName(lastName)
-                    .linkedinId(linkedinId)
-                    .profilePictureUrl(profilePictureUrl)
-                    .emailVerified(true)
-                    .isActive(true)
-                    .lastLoginAt(LocalDateTime.now())
-                    .build();
-            
-            User savedUser = userRepository.save(newUser);
-            
-            // Add default USER role
-            ensureUserRole(savedUser);
+            User user = provisionSocialUser(LINKEDIN, linkedinId, email, firstName, lastName, profilePictureUrl);
             
-            log.info("Created new LinkedIn OAuth user: {}", savedUser.getId());
-            return savedUser;
+            log.info("LinkedIn OAuth user provisioned: {}", user.getId());
+            return user;
             
+        } catch (DisabledException e) {
+            throw e;
         } catch (DataIntegrityViolationException e) {
             log.error("Data integrity violation in LinkedIn OAuth registration", e);
             throw new RuntimeException("User registration failed due to data conflict: " + e.getMessage());
@@ -142,7 +110,8 @@ public class UserService {
         }
     }
 
-    @Transactional
+    // AuthenticationService turns a refused account into a failed login within its own transaction
+    @Transactional(noRollbackFor = DisabledException.class)
     public User registerOAuthUser(String email, String firstName, String lastName, 
                                  String linkedinId, String profilePictureUrl) {
         // Delegate to the new LinkedIn-specific method
@@ -154,61 +123,18 @@ public class UserService {
         try {
             log.info("Processing Google OAuth for email: {}, googleId: {}", email, googleId);
             
-            Optional<User> existingUser = userRepository.findByEmail(email.toLowerCase());
-            
-            if (existingUser.isPresent()) {
-                User user = existingUser.get();
-                log.info("Found existing user: {}", user.getId());
-                
-                // Update Google info if not set
-                if (user.getGoogleId() == null && googleId != null) {
-                    user.setGoogleId(googleId);
-                    if (user.getProfilePictureUrl() == null) {
-                        user.setProfilePictureUrl(profilePictureUrl);
-                    }
-                }
-                
-                user.setLastLoginAt(LocalDateTime.now());
-                User savedUser = userRepository.save(user);
-                
-                // Check and add USER role if missing
-                ensureUserRole(savedUser);
-                
-                log.info("Updated existing user with Google OAuth: {}", savedUser.getId());
-                return savedUser;
-            }
-            
-            // Check if Google ID already exists (different email)
-            Optional<User> googleUser = userRepository.findByGoogleId(googleId);
-            if (googleUser.isPresent()) {
-                log.info("Found user with existing Google ID: {}", googleId);
-                return googleUser.get();
-            }
-            
-            // Create new user
+            // Only used when the user is created; existing names are left alone
             String[] nameParts = name.split(" ", 2);
             String firstName = nameParts[0];
             String lastName = nameParts.length > 1 ? nameParts[1] : "";
             
-            User newUser = User.builder()
-                    .email(email.toLowerCase())
-                    .firstName(firstName)
-                    .lastName(lastName)
-                    .googleId(googleId)
-                    .profilePictureUrl(profilePictureUrl)
-                    .emailVerified(true)
-                    .isActive(true)
-                    .lastLoginAt(LocalDateTime.now())
-                    .build();
-            
-            User savedUser = userRepository.save(newUser);
+            User user = provisionSocialUser(GOOGLE, googleId, email, firstName, lastName, profilePictureUrl);
             
-            // Add default USER role
-            ensureUserRole(savedUser);
-            
-            log.info("Created new Google OAuth user: {}", savedUser.getId());
-            return savedUser;
+            log.info("Google OAuth user provisioned: {}", user.getId());
+            return user;
             
+        } catch (DisabledException e) {
+            throw e;
         } catch (DataIntegrityViolationException e) {
             log.error("Data integrity violation in Google OAuth registration", e);
             throw new RuntimeException("User registration failed due to data conflict: " + e.getMessage());
@@ -218,17 +144,54 @@ public class UserService {
         }
     }
 
-    private void ensureUserRole(User user) {
-        if (!userRoleRepository.existsByUserIdAndRole(user.getId(), "USER")) {
-            UserRole userRole = UserRole.builder()
-                    .user(user)
-                    .role("USER")
-                    .build();
-            userRoleRepository.save(userRole);
-            log.info("Added USER role to user: {}", user.getId());
+    /**
+     * Registers or updates the local user for a social login, linked through
+     * user_identities by (provider, subject).
+     */
+    @Transactional
+    public User registerProviderUser(String provider, ProviderIdentity identity) {
+        switch (provider) {
+            case LINKEDIN:
+                return registerLinkedInOAuthUser(identity.email(), identity.firstName(), identity.lastName(),
+                    identity.subject(), identity.picture());
+            case GOOGLE:
+                return registerGoogleOAuthUser(identity.email(), identity.fullName(), identity.subject(),
+                    identity.picture());
+            default:
+                return registerFederatedUser(provider, identity);
+        }
+    }
+
+    private User registerFederatedUser(String provider, ProviderIdentity identity) {
+        // A login can link to an existing local account by email, so the provider must vouch for it
+        if (!identity.emailVerified()) {
+            throw new RuntimeException("Email address is not verified by " + provider);
+        }
+
+        User user = provisionSocialUser(provider, identity.subject(), identity.email(),
+            identity.firstName(), identity.lastName(), identity.picture());
+
+        log.info("{} OAuth user provisioned: {}", provider, user.getId());
+        return user;
+    }
+
+    // One round trip for new and returning users alike, see UserRepository.upsertSocialUser.
+    // Deactivated and deleted users are refused, as for password login
+    private User provisionSocialUser(String provider, String subject, String email,
+                                     String firstName, String lastName, String profilePictureUrl) {
+        User user = userRepository.upsertSocialUser(provider, subject, email.toLowerCase(),
+            firstName, lastName, profilePictureUrl);
+        if (user == null || !user.canSignIn()) {
+            log.warn("Refusing {} login for deactivated or deleted account: {}", provider, email);
+            throw new DisabledException("Account is deactivated");
         }
+        lastLoginRecorder.record(user.getId());
+        userChanged(user.getId());
+        return user;
     }
     
+    // Not read-only on purpose: sign-in flows look up users they wrote a moment ago,
+    // which a lagging replica may not have yet
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email.toLowerCase());
     }
@@ -237,8 +200,18 @@ public class UserService {
         return userRepository.findById(id);
     }
     
-    public Optional<User> findByLinkedinId(String linkedinId) {
-        return userRepository.findByLinkedinId(linkedinId);
+    // Served from the near-cache; see UserCredentialCache
+    public Optional<LoginCredentials> findLoginCredentials(String email) {
+        return userCredentialCache.get(email);
+    }
+    
+    // Lazy proxy for use as a foreign key; does not hit the database
+    public User getReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+    
+    public Optional<User> findByIdentity(String provider, String subject) {
+        return userRepository.findByIdentity(provider, subject);
     }
     
     public boolean validatePassword(User user, String password) {
@@ -248,6 +221,13 @@ public class UserService {
         return passwordEncoder.matches(password, user.getPasswordHash());
     }
     
+    public boolean validatePassword(LoginCredentials credentials, String password) {
+        if (credentials.getPasswordHash() == null) {
+            return false; // OAuth-only user
+        }
+        return passwordEncoder.matches(password, credentials.getPasswordHash());
+    }
+    
     @Transactional
     public boolean verifyEmail(String token) {
         Optional<User> userOpt = userRepository.findByValidEmailVerificationToken(
@@ -268,6 +248,7 @@ public class UserService {
         
         // Save user first to avoid concurrent modification issues
         userRepository.saveAndFlush(user);
+        userChanged(userId);
         
         // TODO: Re-enable audit logging after fixing concurrent modification issue
         // Temporarily disabled to prevent ConcurrentModificationException
@@ -290,6 +271,7 @@ public class UserService {
         user.setPasswordResetToken(UUID.randomUUID().toString());
         user.setPasswordResetExpiresAt(LocalDateTime.now().plusHours(1));
         userRepository.saveAndFlush(user);
+        userChanged(user.getId());
         
         emailService.sendPasswordResetEmail(user);
         
@@ -314,6 +296,7 @@ public class UserService {
         user.setPasswordResetToken(null);
         user.setPasswordResetExpiresAt(null);
         userRepository.saveAndFlush(user);
+        userChanged(user.getId());
         
         // Log password reset
         auditService.logEvent(user.getId(), "PASSWORD_RESET", 
@@ -323,12 +306,9 @@ public class UserService {
         return true;
     }
     
-    @Transactional
+    // Written behind by LastLoginRecorder; no database work on the login path
     public void updateLastLogin(Long userId) {
-        userRepository.findById(userId).ifPresent(user -> {
-            user.setLastLoginAt(LocalDateTime.now());
-            userRepository.saveAndFlush(user);
-        });
+        lastLoginRecorder.record(userId);
     }
     
     @Transactional
@@ -342,14 +322,36 @@ public class UserService {
                 .role(role)
                 .build();
             userRoleRepository.save(userRole);
+            userChanged(userId);
             
             log.info("Role {} added to user {}", role, userId);
         }
     }
     
+    // Per-user caches on this node (and, if relayed, other nodes) drop the user after commit
+    private void userChanged(Long userId) {
+        eventPublisher.publishEvent(new UserChangedEvent(userId));
+    }
+    
     @Transactional
     public void removeRoleFromUser(Long userId, String role) {
         userRoleRepository.deleteByUserIdAndRole(userId, role);
+        userChanged(userId);
         log.info("Role {} removed from user {}", role, userId);
     }
+    
+    /**
+     * Deactivates the user at once; tokens, roles and identities are removed in the
+     * background by DeletionReaper. Returns false if there is no such user.
+     */
+    @Transactional
+    public boolean deleteUser(Long userId) {
+        if (userRepository.markDeleted(userId, LocalDateTime.now()) == 0) {
+            return false;
+        }
+        userChanged(userId);
+        deletionReaper.reapAfterCommit();
+        log.info("User {} marked for deletion", userId);
+        return true;
+    }
 }
@@ -0,0 +1,138 @@
+package com.example.idp.upstream;
+
+/**
+ * Count-based circuit breaker for one upstream provider. Closed, it tracks the
+ * outcome of the last {@code windowSize} calls and opens once the failure rate
+ * reaches the threshold; open, it refuses calls until {@code openMillis} has
+ * passed; half-open, it lets {@code halfOpenProbes} calls through and closes
+ * only if all of them succeed.
+ *
+ * Calls are rare next to their network cost, so plain synchronization is enough.
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    interface TransitionListener {
+        void onTransition(State from, State to);
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final TransitionListener listener;
+
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesIssued;
+    private int probeSuccesses;
+
+    CircuitBreaker(int windowSize, int minimumCalls, int failureRatePercent, long openMillis,
+                   int halfOpenProbes, TransitionListener listener) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRatePercent = failureRatePercent;
+        this.openNanos = openMillis * 1_000_000L;
+        this.halfOpenProbes = halfOpenProbes;
+        this.listener = listener;
+        this.window = new boolean[windowSize];
+    }
+
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesIssued >= halfOpenProbes) {
+                return false;
+            }
+            probesIssued++;
+        }
+        return true;
+    }
+
+    /**
+     * Gives back a permit for a call that never reached the provider.
+     */
+    synchronized void release() {
+        if (state == State.HALF_OPEN && probesIssued > 0) {
+            probesIssued--;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probeSuccesses >= halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCount >= minimumCalls && windowFailures * 100 >= failureRatePercent * windowCount) {
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    synchronized long retryAfterSeconds() {
+        if (state != State.OPEN) {
+            return 1;
+        }
+        long remaining = openNanos - (System.nanoTime() - openedAt);
+        return Math.max(1, (remaining + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == windowSize) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+    }
+
+    private void transition(State to) {
+        State from = state;
+        state = to;
+        switch (to) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                probesIssued = 0;
+                probeSuccesses = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                windowCount = 0;
+                windowFailures = 0;
+            }
+        }
+        listener.onTransition(from, to);
+    }
+}
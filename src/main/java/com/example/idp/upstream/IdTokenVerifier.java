@@ -0,0 +1,63 @@
+package com.example.idp.upstream;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.Key;
+import java.util.Collection;
+
+/**
+ * Verifies ID tokens returned by upstream OIDC providers against their cached
+ * signing keys, so the identity can be taken from the token instead of a
+ * userinfo call.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdTokenVerifier {
+
+    private final ProviderJwksCache providerJwksCache;
+
+    @Value("${upstream.id-token.clock-skew-seconds:60}")
+    private long clockSkewSeconds;
+
+    public Claims verify(String provider, String jwksUri, String idToken,
+                         Collection<String> issuers, String audience) {
+        Claims claims;
+        try {
+            claims = Jwts.parserBuilder()
+                .setAllowedClockSkewSeconds(clockSkewSeconds)
+                .requireAudience(audience)
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    // jjwt 0.11 declares this override with a raw JwsHeader
+                    @Override
+                    @SuppressWarnings("rawtypes")
+                    public Key resolveSigningKey(JwsHeader header, Claims body) {
+                        if (!"RS256".equals(header.getAlgorithm())) {
+                            throw new JwtException("Unexpected ID token algorithm: " + header.getAlgorithm());
+                        }
+                        Key key = providerJwksCache.resolve(provider, jwksUri, header.getKeyId());
+                        if (key == null) {
+                            throw new JwtException("Unknown signing key: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build()
+                .parseClaimsJws(idToken)
+                .getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new RuntimeException("Invalid " + provider + " ID token: " + e.getMessage(), e);
+        }
+
+        if (!issuers.contains(claims.getIssuer())) {
+            throw new RuntimeException("Invalid " + provider + " ID token issuer: " + claims.getIssuer());
+        }
+        return claims;
+    }
+}
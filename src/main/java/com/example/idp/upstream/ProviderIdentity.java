@@ -0,0 +1,36 @@
+package com.example.idp.upstream;
+
+/**
+ * The user as asserted by an upstream provider, in OIDC standard claim terms.
+ */
+public record ProviderIdentity(
+        String subject,
+        String email,
+        boolean emailVerified,
+        String givenName,
+        String familyName,
+        String name,
+        String picture) {
+
+    public String firstName() {
+        if (givenName != null) {
+            return givenName;
+        }
+        return name != null ? name.split(" ", 2)[0] : null;
+    }
+
+    public String lastName() {
+        if (familyName != null) {
+            return familyName;
+        }
+        String[] parts = name != null ? name.split(" ", 2) : new String[0];
+        return parts.length > 1 ? parts[1] : "";
+    }
+
+    public String fullName() {
+        if (name != null) {
+            return name;
+        }
+        return ((givenName != null ? givenName : "") + " " + (familyName != null ? familyName : "")).trim();
+    }
+}
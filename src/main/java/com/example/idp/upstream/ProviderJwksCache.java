@@ -0,0 +1,154 @@
+package com.example.idp.upstream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Signing keys of upstream identity providers, used to verify their ID tokens
+ * locally. Key sets are refreshed in the background; an unknown kid triggers at
+ * most one fetch per provider at a time (concurrent misses wait for it), and
+ * never more often than the minimum refetch interval.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProviderJwksCache {
+
+    private final UpstreamHttpClients upstreamHttpClients;
+
+    @Value("${upstream.jwks.refresh-interval-seconds:3600}")
+    private long refreshIntervalSeconds;
+
+    @Value("${upstream.jwks.min-refetch-interval-seconds:30}")
+    private long minRefetchIntervalSeconds;
+
+    private final Map<String, ProviderKeys> providers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    public void init() {
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "provider-jwks-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshAll,
+            refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Returns the provider's key for the kid, or null if the provider does not
+     * publish one even after a refetch.
+     */
+    public PublicKey resolve(String provider, String jwksUri, String kid) {
+        ProviderKeys keys = providers.computeIfAbsent(provider, p -> new ProviderKeys(p, jwksUri));
+        PublicKey key = keys.keys.get(kid);
+        if (key != null) {
+            return key;
+        }
+
+        long sinceFetch = System.nanoTime() - keys.fetchedAt;
+        if (keys.fetchedAt != 0 && sinceFetch < TimeUnit.SECONDS.toNanos(minRefetchIntervalSeconds)) {
+            return null;
+        }
+        return refresh(keys).get(kid);
+    }
+
+    private void refreshAll() {
+        for (ProviderKeys keys : providers.values()) {
+            try {
+                refresh(keys);
+            } catch (Exception e) {
+                // Keep serving the previous key set until the provider recovers
+                log.warn("Background JWKS refresh failed for {}: {}", keys.provider, e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, PublicKey> refresh(ProviderKeys keys) {
+        CompletableFuture<Map<String, PublicKey>> mine = new CompletableFuture<>();
+        CompletableFuture<Map<String, PublicKey>> running = keys.inFlight.compareAndExchange(null, mine);
+        if (running != null) {
+            return running.join();
+        }
+
+        try {
+            Map<String, PublicKey> fetched = fetch(keys);
+            keys.keys = fetched;
+            keys.fetchedAt = System.nanoTime();
+            mine.complete(fetched);
+            log.info("Loaded {} signing keys for {}", fetched.size(), keys.provider);
+            return fetched;
+        } catch (RuntimeException e) {
+            // Failed attempts count too, so a dead provider is not hammered on every miss
+            keys.fetchedAt = System.nanoTime();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            keys.inFlight.set(null);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, PublicKey> fetch(ProviderKeys keys) {
+        Map<String, Object> jwks = upstreamHttpClients.forProvider(keys.provider)
+            .getForObject(keys.jwksUri, Map.class);
+        if (jwks == null || !(jwks.get("keys") instanceof List<?> list)) {
+            throw new IllegalStateException("Invalid JWKS from " + keys.provider);
+        }
+
+        Map<String, PublicKey> result = new HashMap<>();
+        for (Object entry : list) {
+            Map<String, Object> jwk = (Map<String, Object>) entry;
+            if (!"RSA".equals(jwk.get("kty")) || jwk.get("kid") == null || "enc".equals(jwk.get("use"))) {
+                continue;
+            }
+            try {
+                BigInteger n = new BigInteger(1, Base64.getUrlDecoder().decode((String) jwk.get("n")));
+                BigInteger e = new BigInteger(1, Base64.getUrlDecoder().decode((String) jwk.get("e")));
+                result.put((String) jwk.get("kid"), KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(n, e)));
+            } catch (GeneralSecurityException | IllegalArgumentException ex) {
+                log.warn("Skipping unusable key {} from {}", jwk.get("kid"), keys.provider);
+            }
+        }
+        return Map.copyOf(result);
+    }
+
+    private static final class ProviderKeys {
+        private final String provider;
+        private final String jwksUri;
+        private final AtomicReference<CompletableFuture<Map<String, PublicKey>>> inFlight = new AtomicReference<>();
+        private volatile Map<String, PublicKey> keys = Map.of();
+        private volatile long fetchedAt;
+
+        private ProviderKeys(String provider, String jwksUri) {
+            this.provider = provider;
+            this.jwksUri = jwksUri;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.idp.upstream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs social-login callbacks off the servlet thread so that slow providers hold
+ * these threads, not Tomcat workers. On Java 21+ with
+ * {@code spring.threads.virtual.enabled=true} every callback gets its own virtual
+ * thread and the per-provider bulkheads are the only limit; otherwise a bounded
+ * platform pool is used, sized independently of the Tomcat pool.
+ *
+ * Deliberately not registered as an {@code Executor} bean, so Boot's default
+ * task executor is left alone.
+ */
+@Component
+@Slf4j
+public class UpstreamCallExecutor {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${oauth2.callback.max-threads:200}")
+    private int maxThreads;
+
+    @Value("${oauth2.callback.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private AsyncTaskExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("oauth-callback-");
+            virtual.setVirtualThreads(true);
+            executor = virtual;
+            log.info("OAuth callbacks run on virtual threads");
+            return;
+        }
+
+        ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setThreadNamePrefix("oauth-callback-");
+        pool.setCorePoolSize(maxThreads);
+        pool.setMaxPoolSize(maxThreads);
+        pool.setAllowCoreThreadTimeOut(true);
+        pool.setQueueCapacity(queueCapacity);
+        pool.initialize();
+        executor = pool;
+        log.info("OAuth callbacks run on a pool of up to {} threads", maxThreads);
+    }
+
+    public AsyncTaskExecutor executor() {
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        } else if (executor instanceof SimpleAsyncTaskExecutor virtual) {
+            virtual.close();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.idp.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One HTTP client per upstream identity provider. Each provider gets its own
+ * keep-alive connection pool (HTTP/2 where the provider offers it), bounded
+ * connect and response timeouts, and a bulkhead capping concurrent calls so a
+ * slow provider cannot absorb every request thread.
+ *
+ * Settings are read from {@code upstream.http.<provider>.*}, falling back to
+ * {@code upstream.http.*}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UpstreamHttpClients {
+
+    private static final String PREFIX = "upstream.http.";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, RestTemplate> clients = new ConcurrentHashMap<>();
+
+    public RestTemplate forProvider(String provider) {
+        return clients.computeIfAbsent(provider, this::create);
+    }
+
+    private RestTemplate create(String provider) {
+        Duration connectTimeout = Duration.ofMillis(setting(provider, "connect-timeout-ms", 2000));
+        Duration responseTimeout = Duration.ofMillis(setting(provider, "read-timeout-ms", 5000));
+        int maxConcurrent = (int) setting(provider, "max-concurrent", 50);
+        long acquireTimeoutMs = setting(provider, "acquire-timeout-ms", 100);
+
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(responseTimeout);
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(circuitBreaker(provider));
+        restTemplate.getInterceptors().add(bulkhead(provider, maxConcurrent, acquireTimeoutMs));
+
+        log.info("Upstream client for {}: connect {}ms, response {}ms, max {} concurrent calls",
+            provider, connectTimeout.toMillis(), responseTimeout.toMillis(), maxConcurrent);
+        return restTemplate;
+    }
+
+    private long setting(String provider, String key, long defaultValue) {
+        Long global = environment.getProperty(PREFIX + key, Long.class, defaultValue);
+        return environment.getProperty(PREFIX + provider + "." + key, Long.class, global);
+    }
+
+    /**
+     * Server errors, 429s and I/O failures (timeouts included) count against the
+     * provider; other 4xx responses are the caller's fault and count as healthy.
+     * While the breaker is open, calls fail immediately with a Retry-After hint.
+     */
+    private ClientHttpRequestInterceptor circuitBreaker(String provider) {
+        Counter rejected = Counter.builder("upstream.circuit.rejected")
+            .tag("provider", provider)
+            .register(meterRegistry);
+        CircuitBreaker breaker = new CircuitBreaker(
+            (int) setting(provider, "circuit.window-size", 20),
+            (int) setting(provider, "circuit.minimum-calls", 10),
+            (int) setting(provider, "circuit.failure-rate-threshold", 50),
+            setting(provider, "circuit.open-ms", 30000),
+            (int) setting(provider, "circuit.half-open-probes", 3),
+            (from, to) -> {
+                log.warn("Circuit for {} moved from {} to {}", provider, from, to);
+                meterRegistry.counter("upstream.circuit.transitions",
+                    "provider", provider, "from", from.name(), "to", to.name()).increment();
+            });
+        meterRegistry.gauge("upstream.circuit.state", Tags.of("provider", provider),
+            breaker, b -> b.state().ordinal());
+
+        return (request, body, execution) -> {
+            if (!breaker.tryAcquire()) {
+                rejected.increment();
+                throw new UpstreamUnavailableException(provider,
+                    provider + " is unavailable (circuit open)", breaker.retryAfterSeconds());
+            }
+
+            ClientHttpResponse response = null;
+            try {
+                response = execution.execute(request, body);
+                HttpStatusCode status = response.getStatusCode();
+                if (status.is5xxServerError() || status.value() == 429) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+                return response;
+            } catch (UpstreamUnavailableException e) {
+                breaker.release();
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                breaker.onFailure();
+                if (response != null) {
+                    // Nobody else will read it, and closing gives back the bulkhead permit
+                    response.close();
+                }
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * The permit is held until the response body is closed, so the bulkhead counts
+     * calls that are still streaming, and the latency sample covers the full call.
+     */
+    private ClientHttpRequestInterceptor bulkhead(String provider, int maxConcurrent, long acquireTimeoutMs) {
+        Semaphore permits = new Semaphore(maxConcurrent);
+        Counter rejected = Counter.builder("upstream.http.rejected")
+            .tag("provider", provider)
+            .register(meterRegistry);
+        meterRegistry.gauge("upstream.http.in_flight", Tags.of("provider", provider),
+            permits, p -> maxConcurrent - p.availablePermits());
+
+        return (request, body, execution) -> {
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UpstreamUnavailableException(provider, "Interrupted waiting for " + provider);
+            }
+            if (!acquired) {
+                rejected.increment();
+                throw new UpstreamUnavailableException(provider, "Too many concurrent calls to " + provider);
+            }
+
+            long start = System.nanoTime();
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                return new ReleasingResponse(response, () -> {
+                    permits.release();
+                    record(provider, outcomeOf(response), start);
+                });
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                record(provider, "error", start);
+                throw e;
+            }
+        };
+    }
+
+    private void record(String provider, String outcome, long startNanos) {
+        Timer.builder("upstream.http.requests")
+            .description("Latency of calls to upstream identity providers")
+            .tag("provider", provider)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String outcomeOf(ClientHttpResponse response) {
+        try {
+            HttpStatusCode status = response.getStatusCode();
+            return status.is2xxSuccessful() ? "success" : status.is4xxClientError() ? "client_error" : "server_error";
+        } catch (IOException e) {
+            return "error";
+        }
+    }
+
+    private static final class ReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private ReleasingResponse(ClientHttpResponse delegate, Runnable onClose) {
+            this.delegate = delegate;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (closed.compareAndSet(false, true)) {
+                    onClose.run();
+                }
+            }
+        }
+    }
+}
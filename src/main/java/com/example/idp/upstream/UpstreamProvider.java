@@ -0,0 +1,49 @@
+package com.example.idp.upstream;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An upstream identity provider as resolved from configuration (and, where an
+ * issuer is configured, its OIDC discovery document). Immutable; the registry
+ * hands out the same instance to every request.
+ *
+ * @param allowedClients internal client ids this provider may log users in for;
+ *                       empty means any active registered client
+ * @param defaultClient  client tokens are minted for when the caller names none
+ */
+public record UpstreamProvider(
+        String id,
+        String displayName,
+        String clientId,
+        String clientSecret,
+        String redirectUri,
+        String issuerUri,
+        String authorizationUri,
+        String tokenUri,
+        String userInfoUri,
+        String jwksUri,
+        List<String> issuers,
+        String scope,
+        Set<String> allowedClients,
+        String defaultClient,
+        String callbackMessageType,
+        boolean decodeCode) {
+
+    @Override
+    public String toString() {
+        return "UpstreamProvider[" + id + "]";
+    }
+
+    boolean needsDiscovery() {
+        return issuerUri != null
+            && (authorizationUri == null || tokenUri == null || userInfoUri == null || jwksUri == null);
+    }
+
+    UpstreamProvider withEndpoints(String authorizationUri, String tokenUri, String userInfoUri,
+                                   String jwksUri, List<String> issuers) {
+        return new UpstreamProvider(id, displayName, clientId, clientSecret, redirectUri, issuerUri,
+            authorizationUri, tokenUri, userInfoUri, jwksUri, issuers, scope, allowedClients,
+            defaultClient, callbackMessageType, decodeCode);
+    }
+}
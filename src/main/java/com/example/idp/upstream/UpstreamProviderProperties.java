@@ -0,0 +1,32 @@
+package com.example.idp.upstream;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binding target for {@code upstream.providers.<id>.*}.
+ */
+@Data
+public class UpstreamProviderProperties {
+
+    private String displayName;
+    private String clientId;
+    private String clientSecret;
+    private String redirectUri;
+
+    // Either an issuer (endpoints are discovered) or explicit endpoints, or both
+    private String issuerUri;
+    private String authorizationUri;
+    private String tokenUri;
+    private String userInfoUri;
+    private String jwksUri;
+    private List<String> issuers = new ArrayList<>();
+
+    private String scope = "openid profile email";
+    private List<String> allowedClients = new ArrayList<>();
+    private String defaultClient;
+    private String callbackMessageType;
+    private boolean decodeCode;
+}
@@ -0,0 +1,229 @@
+package com.example.idp.upstream;
+
+import com.example.idp.repository.OAuthClientRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Upstream identity providers, keyed by the id used in callback paths. Loaded
+ * once from {@code upstream.providers.<id>.*} into an immutable map, so adding a
+ * provider is a configuration change.
+ *
+ * LinkedIn and Google are also built from the older {@code oauth2.linkedin.*}
+ * and {@code oauth2.google.*} properties when those are set; any
+ * {@code upstream.providers} entry with the same id overrides them field by field.
+ *
+ * Providers configured by issuer alone are resolved from their discovery document
+ * on first use. Only one fetch per provider runs at a time (concurrent callers
+ * wait for it), and after a failure the provider is refused without a fetch for a
+ * backoff that doubles with each further failure.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UpstreamProviderRegistry {
+
+    private final Environment environment;
+    private final UpstreamHttpClients upstreamHttpClients;
+    private final OAuthClientRepository oauthClientRepository;
+
+    private Map<String, UpstreamProvider> providers = Map.of();
+
+    @Value("${upstream.discovery.retry-after-seconds:5}")
+    private long retryAfterSeconds;
+
+    @Value("${upstream.discovery.max-retry-after-seconds:300}")
+    private long maxRetryAfterSeconds;
+
+    // Discovery state per provider; the HTTP fetch runs outside the map's locks
+    private final Map<String, Discovery> discovered = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Binder binder = Binder.get(environment);
+        Map<String, UpstreamProviderProperties> configured = new LinkedHashMap<>(legacyProviders());
+        binder.bind("upstream.providers", Bindable.mapOf(String.class, UpstreamProviderProperties.class))
+            .ifBound(bound -> bound.keySet().forEach(id -> configured.putIfAbsent(id, new UpstreamProviderProperties())));
+
+        Map<String, UpstreamProvider> result = new HashMap<>();
+        configured.forEach((id, properties) -> {
+            binder.bind("upstream.providers." + id, Bindable.ofInstance(properties));
+            result.put(id, toProvider(id, properties));
+        });
+        providers = Map.copyOf(result);
+        log.info("Upstream identity providers: {}", providers.keySet());
+    }
+
+    public Optional<UpstreamProvider> find(String id) {
+        UpstreamProvider provider = id != null ? providers.get(id) : null;
+        if (provider == null || !provider.needsDiscovery()) {
+            return Optional.ofNullable(provider);
+        }
+        return Optional.of(resolve(discovered.computeIfAbsent(id, key -> new Discovery()), provider));
+    }
+
+    public boolean acceptsClient(UpstreamProvider provider, String clientId) {
+        if (clientId == null) {
+            return false;
+        }
+        if (clientId.equals(provider.defaultClient()) || provider.allowedClients().contains(clientId)) {
+            return true;
+        }
+        return provider.allowedClients().isEmpty()
+            && oauthClientRepository.findByClientIdAndIsActiveTrue(clientId).isPresent();
+    }
+
+    private UpstreamProvider resolve(Discovery discovery, UpstreamProvider provider) {
+        UpstreamProvider resolved = discovery.resolved;
+        if (resolved != null) {
+            return resolved;
+        }
+
+        long remainingNanos = discovery.retryAt - System.nanoTime();
+        if (discovery.failures > 0 && remainingNanos > 0) {
+            throw new UpstreamUnavailableException(provider.id(), "Discovery for " + provider.id() + " failed recently",
+                Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remainingNanos)));
+        }
+
+        CompletableFuture<UpstreamProvider> mine = new CompletableFuture<>();
+        CompletableFuture<UpstreamProvider> running = discovery.inFlight.compareAndExchange(null, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            resolved = discover(provider);
+            discovery.resolved = resolved;
+            discovery.failures = 0;
+            mine.complete(resolved);
+            return resolved;
+        } catch (RuntimeException e) {
+            int failures = ++discovery.failures;
+            long backoffSeconds = Math.min(retryAfterSeconds << Math.min(failures - 1, 16), maxRetryAfterSeconds);
+            discovery.retryAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(backoffSeconds);
+            log.warn("Discovery for {} failed ({} in a row), retrying after {}s: {}",
+                provider.id(), failures, backoffSeconds, e.getMessage());
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            discovery.inFlight.set(null);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private UpstreamProvider discover(UpstreamProvider provider) {
+        String uri = provider.issuerUri().replaceAll("/$", "") + "/.well-known/openid-configuration";
+        Map<String, Object> metadata = upstreamHttpClients.forProvider(provider.id()).getForObject(uri, Map.class);
+        if (metadata == null) {
+            throw new IllegalStateException("Empty discovery document for " + provider.id());
+        }
+
+        // Explicitly configured values win over discovered ones
+        UpstreamProvider resolved = provider.withEndpoints(
+            firstNonNull(provider.authorizationUri(), (String) metadata.get("authorization_endpoint")),
+            firstNonNull(provider.tokenUri(), (String) metadata.get("token_endpoint")),
+            firstNonNull(provider.userInfoUri(), (String) metadata.get("userinfo_endpoint")),
+            firstNonNull(provider.jwksUri(), (String) metadata.get("jwks_uri")),
+            provider.issuers().isEmpty() && metadata.get("issuer") != null
+                ? List.of((String) metadata.get("issuer"))
+                : provider.issuers());
+        log.info("Resolved endpoints for {} from {}", provider.id(), uri);
+        return resolved;
+    }
+
+    private UpstreamProvider toProvider(String id, UpstreamProviderProperties p) {
+        List<String> issuers = p.getIssuers().isEmpty() && p.getIssuerUri() != null
+            ? List.of(p.getIssuerUri())
+            : List.copyOf(p.getIssuers());
+        Set<String> allowedClients = Set.copyOf(new LinkedHashSet<>(p.getAllowedClients()));
+        return new UpstreamProvider(
+            id,
+            p.getDisplayName() != null ? p.getDisplayName() : id,
+            p.getClientId(),
+            p.getClientSecret(),
+            p.getRedirectUri(),
+            p.getIssuerUri(),
+            p.getAuthorizationUri(),
+            p.getTokenUri(),
+            p.getUserInfoUri(),
+            p.getJwksUri(),
+            issuers,
+            p.getScope(),
+            allowedClients,
+            p.getDefaultClient(),
+            p.getCallbackMessageType() != null ? p.getCallbackMessageType() : id.toUpperCase() + "_OAUTH_CALLBACK",
+            p.isDecodeCode());
+    }
+
+    private Map<String, UpstreamProviderProperties> legacyProviders() {
+        Map<String, UpstreamProviderProperties> legacy = new LinkedHashMap<>();
+
+        if (environment.containsProperty("oauth2.linkedin.client-id")) {
+            UpstreamProviderProperties linkedin = new UpstreamProviderProperties();
+            linkedin.setDisplayName("LinkedIn");
+            linkedin.setClientId(environment.getProperty("oauth2.linkedin.client-id"));
+            linkedin.setClientSecret(environment.getProperty("oauth2.linkedin.client-secret"));
+            linkedin.setRedirectUri(environment.getProperty("oauth2.linkedin.redirect-uri"));
+            linkedin.setAuthorizationUri("https://www.linkedin.com/oauth/v2/authorization");
+            linkedin.setTokenUri("https://www.linkedin.com/oauth/v2/accessToken");
+            linkedin.setUserInfoUri("https://api.linkedin.com/v2/userinfo");
+            linkedin.setJwksUri("https://www.linkedin.com/oauth/openid/jwks");
+            linkedin.setIssuers(List.of("https://www.linkedin.com/oauth"));
+            linkedin.setCallbackMessageType("linkedin_callback");
+            legacy.put("linkedin", linkedin);
+        }
+
+        if (environment.containsProperty("oauth2.google.client-id")) {
+            UpstreamProviderProperties google = new UpstreamProviderProperties();
+            google.setDisplayName("Google");
+            google.setClientId(environment.getProperty("oauth2.google.client-id"));
+            google.setClientSecret(environment.getProperty("oauth2.google.client-secret"));
+            google.setRedirectUri(environment.getProperty("oauth2.google.redirect-uri"));
+            google.setAuthorizationUri("https://accounts.google.com/o/oauth2/v2/auth");
+            google.setTokenUri("https://oauth2.googleapis.com/token");
+            google.setUserInfoUri("https://openidconnect.googleapis.com/v1/userinfo");
+            google.setJwksUri("https://www.googleapis.com/oauth2/v3/certs");
+            google.setIssuers(List.of("https://accounts.google.com", "accounts.google.com"));
+            google.setCallbackMessageType("GOOGLE_OAUTH_CALLBACK");
+            google.setDecodeCode(true);
+            legacy.put("google", google);
+        }
+
+        return legacy;
+    }
+
+    private static final class Discovery {
+        private final AtomicReference<CompletableFuture<UpstreamProvider>> inFlight = new AtomicReference<>();
+        private volatile UpstreamProvider resolved;
+        // Only written by the thread holding inFlight
+        private volatile int failures;
+        private volatile long retryAt;
+    }
+
+    private static String firstNonNull(String configured, String discovered) {
+        return configured != null ? configured : discovered;
+    }
+}
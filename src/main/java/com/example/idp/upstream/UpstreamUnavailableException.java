@@ -0,0 +1,30 @@
+package com.example.idp.upstream;
+
+/**
+ * Thrown when a call to an upstream identity provider is refused locally, without
+ * touching the network, because the provider's capacity is exhausted or its
+ * circuit is open.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    private final String provider;
+    private final long retryAfterSeconds;
+
+    public UpstreamUnavailableException(String provider, String message) {
+        this(provider, message, 1);
+    }
+
+    public UpstreamUnavailableException(String provider, String message, long retryAfterSeconds) {
+        super(message);
+        this.provider = provider;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
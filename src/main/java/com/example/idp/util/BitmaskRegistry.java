@@ -0,0 +1,108 @@
+package com.example.idp.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interns role and scope names to bit positions so that a whole role or scope set
+ * fits in one {@code long} and a membership check is a single AND.
+ *
+ * The well-known names are registered up front and keep the same bits on every
+ * node; anything else is assigned the next free bit the first time it is seen
+ * in stored data. Names arriving in requests are only looked up, never interned.
+ */
+public final class BitmaskRegistry {
+
+    public static final BitmaskRegistry ROLES = new BitmaskRegistry(
+        "ADMIN", "USER", "DEPARTMENT_HEAD", "TEACHER");
+
+    public static final BitmaskRegistry SCOPES = new BitmaskRegistry(
+        "openid", "profile", "email", "read", "write");
+
+    private static final int CAPACITY = Long.SIZE;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> names = new AtomicReferenceArray<>(CAPACITY);
+    private int next;
+
+    // Package-private so tests can overflow a registry of their own
+    BitmaskRegistry(String... wellKnown) {
+        for (String name : wellKnown) {
+            intern(name);
+        }
+    }
+
+    /**
+     * Returns the bit for the name, assigning one if needed, or -1 once all 64 bits are taken.
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            if (next >= CAPACITY) {
+                return -1;
+            }
+            names.set(next, name);
+            ids.put(name, next);
+            return next++;
+        }
+    }
+
+    public int idOf(String name) {
+        Integer id = name != null ? ids.get(name) : null;
+        return id != null ? id : -1;
+    }
+
+    public boolean contains(long mask, String name) {
+        int id = idOf(name);
+        return id >= 0 && (mask & (1L << id)) != 0;
+    }
+
+    /**
+     * Mask for the given names, or null if the registry has overflowed and the
+     * caller must fall back to comparing names.
+     */
+    public Long maskOf(Collection<String> values) {
+        long mask = 0;
+        if (values != null) {
+            for (String value : values) {
+                int id = intern(value);
+                if (id < 0) {
+                    return null;
+                }
+                mask |= 1L << id;
+            }
+        }
+        return mask;
+    }
+
+    public Long with(Long mask, String name) {
+        int id = intern(name);
+        return mask == null || id < 0 ? null : mask | (1L << id);
+    }
+
+    public Long without(Long mask, String name) {
+        int id = idOf(name);
+        return mask == null ? null : id < 0 ? mask : mask & ~(1L << id);
+    }
+
+    public List<String> namesOf(long mask) {
+        List<String> result = new ArrayList<>(Long.bitCount(mask));
+        while (mask != 0) {
+            int id = Long.numberOfTrailingZeros(mask);
+            result.add(names.get(id));
+            mask &= mask - 1;
+        }
+        return result;
+    }
+}
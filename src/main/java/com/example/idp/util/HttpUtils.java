@@ -29,4 +29,38 @@ public class HttpUtils {
         
         return request.getRemoteAddr();
     }
+    
+    /**
+     * Whether an Accept-Encoding header allows the given content coding, honouring
+     * q-values (RFC 9110 12.5.3): {@code q=0} excludes a coding, and {@code *}
+     * covers codings that are not listed explicitly.
+     */
+    public static boolean acceptsEncoding(String acceptEncoding, String coding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+        Double wildcard = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim();
+            double q = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase(coding)) {
+                return q > 0;
+            }
+            if ("*".equals(name)) {
+                wildcard = q;
+            }
+        }
+        return wildcard != null && wildcard > 0;
+    }
 }
@@ -0,0 +1,26 @@
+-- Moves the per-provider id columns on users into user_identities (provider, subject, user_id),
+-- then drops them. Databases created since never had the columns and are left as they are.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = 'users' AND column_name = 'linkedin_id') THEN
+        INSERT INTO user_identities (provider, subject, user_id, created_at)
+        SELECT 'linkedin', u.linkedin_id, u.id, CURRENT_TIMESTAMP
+        FROM users u
+        WHERE u.linkedin_id IS NOT NULL
+        ON CONFLICT (provider, subject) DO NOTHING;
+
+        ALTER TABLE users DROP COLUMN linkedin_id;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = 'users' AND column_name = 'google_id') THEN
+        INSERT INTO user_identities (provider, subject, user_id, created_at)
+        SELECT 'google', u.google_id, u.id, CURRENT_TIMESTAMP
+        FROM users u
+        WHERE u.google_id IS NOT NULL
+        ON CONFLICT (provider, subject) DO NOTHING;
+
+        ALTER TABLE users DROP COLUMN google_id;
+    END IF;
+END $$;
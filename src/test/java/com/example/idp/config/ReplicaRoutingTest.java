@@ -0,0 +1,115 @@
+package com.example.idp.config;
+
+import com.example.idp.PostgresIntegrationTest;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A second server stands in for the replica; the database name tells it apart from the primary
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+class ReplicaRoutingTest extends PostgresIntegrationTest {
+
+    private static final String PRIMARY = postgres.getDatabaseName();
+
+    @Container
+    static PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:16-alpine").withDatabaseName("replica");
+
+    @DynamicPropertySource
+    static void replicaProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.replica.url", replica::getJdbcUrl);
+        registry.add("spring.datasource.replica.username", replica::getUsername);
+        registry.add("spring.datasource.replica.password", replica::getPassword);
+    }
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    @Autowired
+    private MarkedReads markedReads;
+
+    @TestConfiguration
+    static class MarkedReadsConfig {
+        @Bean
+        MarkedReads markedReads(JdbcTemplate jdbcTemplate) {
+            return new MarkedReads(jdbcTemplate);
+        }
+    }
+
+    static class MarkedReads {
+        private final JdbcTemplate jdbcTemplate;
+
+        MarkedReads(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @ReplicaRead
+        @Transactional(readOnly = true)
+        public String currentDatabase() {
+            return jdbcTemplate.queryForObject("SELECT current_database()", String.class);
+        }
+    }
+
+    @Test
+    @Order(1)
+    void markedReadOnlyTransactionsUseTheReplica() {
+        assertThat(markedReads.currentDatabase()).isEqualTo("replica");
+        assertThat(currentDatabase(false)).isEqualTo(PRIMARY);
+        assertThat(jdbcTemplate.queryForObject("SELECT current_database()", String.class)).isEqualTo(PRIMARY);
+    }
+
+    @Test
+    @Order(1)
+    void unmarkedReadOnlyTransactionsStayOnThePrimary() {
+        assertThat(currentDatabase(true)).isEqualTo(PRIMARY);
+    }
+
+    @Test
+    @Order(2)
+    void repositoryDefaultTransactionsStayOnThePrimary() {
+        // The schema only exists on the primary, so this fails if routed to the replica
+        assertThat(oauthClientRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    @Order(3)
+    void writesAfterReadOnlyTransactionGoToThePrimary() {
+        assertThat(markedReads.currentDatabase()).isEqualTo("replica");
+
+        assertThat(currentDatabase(false)).isEqualTo(PRIMARY);
+    }
+
+    @Test
+    @Order(4)
+    void unavailableReplicaFallsBackToPrimary() {
+        assertThat(lagMonitor.isReplicaUsable()).isTrue();
+
+        replica.stop();
+        lagMonitor.check();
+
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(markedReads.currentDatabase()).isEqualTo(PRIMARY);
+    }
+
+    private String currentDatabase(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT current_database()", String.class));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.idp.config;
+
+import com.example.idp.PostgresIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaMigrationsTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private SchemaMigrations schemaMigrations;
+
+    @Test
+    void providerIdsAreCopiedToUserIdentitiesThenDropped() {
+        // The users table as it was before user_identities, with V1 not yet applied
+        jdbcTemplate.execute("ALTER TABLE users ADD COLUMN linkedin_id VARCHAR(255) UNIQUE");
+        jdbcTemplate.execute("ALTER TABLE users ADD COLUMN google_id VARCHAR(255) UNIQUE");
+        jdbcTemplate.update("DELETE FROM schema_migrations WHERE version = 1");
+        Long both = legacyUser("legacy-both@example.com", "li-both", "g-both");
+        Long linkedinOnly = legacyUser("legacy-linkedin@example.com", "li-only", null);
+        Long neither = legacyUser("legacy-password@example.com", null, null);
+        // Already linked, e.g. by a login on a node running the new code first
+        jdbcTemplate.update("INSERT INTO user_identities (provider, subject, user_id, created_at) VALUES ('google', 'g-both', ?, now())", both);
+
+        schemaMigrations.migrate();
+
+        assertThat(identity("linkedin", "li-both")).isEqualTo(both);
+        assertThat(identity("google", "g-both")).isEqualTo(both);
+        assertThat(identity("linkedin", "li-only")).isEqualTo(linkedinOnly);
+        assertThat(count("SELECT COUNT(*) FROM user_identities WHERE user_id = ?", neither)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM information_schema.columns WHERE table_name = 'users'"
+            + " AND column_name IN ('linkedin_id', 'google_id')")).isZero();
+        assertThat(count("SELECT COUNT(*) FROM schema_migrations WHERE version = 1")).isEqualTo(1);
+    }
+
+    @Test
+    void appliedMigrationsDoNotRunAgain() {
+        long identities = count("SELECT COUNT(*) FROM user_identities");
+        long applied = count("SELECT COUNT(*) FROM schema_migrations");
+        // Would be copied and dropped again if V1 ran a second time
+        jdbcTemplate.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS linkedin_id VARCHAR(255)");
+        jdbcTemplate.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS google_id VARCHAR(255)");
+        try {
+            legacyUser("legacy-late@example.com", "li-late", null);
+
+            schemaMigrations.migrate();
+
+            assertThat(count("SELECT COUNT(*) FROM user_identities")).isEqualTo(identities);
+            assertThat(count("SELECT COUNT(*) FROM schema_migrations")).isEqualTo(applied);
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE users DROP COLUMN IF EXISTS linkedin_id");
+            jdbcTemplate.execute("ALTER TABLE users DROP COLUMN IF EXISTS google_id");
+        }
+    }
+
+    private Long legacyUser(String email, String linkedinId, String googleId) {
+        return jdbcTemplate.queryForObject(
+            "INSERT INTO users (email, linkedin_id, google_id, email_verified, is_active, created_at, updated_at)"
+            + " VALUES (?, ?, ?, true, true, now(), now()) RETURNING id",
+            Long.class, email, linkedinId, googleId);
+    }
+
+    private Long identity(String provider, String subject) {
+        return jdbcTemplate.queryForObject(
+            "SELECT user_id FROM user_identities WHERE provider = ? AND subject = ?", Long.class, provider, subject);
+    }
+}
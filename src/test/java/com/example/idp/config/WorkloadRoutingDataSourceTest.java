@@ -0,0 +1,76 @@
+package com.example.idp.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WorkloadRoutingDataSourceTest {
+
+    private final ReplicaLagMonitor lagMonitor = mock(ReplicaLagMonitor.class);
+    private final WorkloadRoutingDataSource routing = new WorkloadRoutingDataSource(
+        mock(DataSource.class), mock(DataSource.class), mock(DataSource.class), lagMonitor);
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        WorkloadRoutingDataSource.restoreReplicaRead(false);
+    }
+
+    @Test
+    void unmarkedWorkUsesTheAuthPoolEvenWhenReadOnly() {
+        when(lagMonitor.isReplicaUsable()).thenReturn(true);
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("auth");
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("auth");
+    }
+
+    @Test
+    void markedReadOnlyWorkUsesTheReplicaWhileItIsFresh() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        WorkloadRoutingDataSource.markReplicaRead();
+
+        when(lagMonitor.isReplicaUsable()).thenReturn(true);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica");
+        when(lagMonitor.isReplicaUsable()).thenReturn(false);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("reporting");
+    }
+
+    @Test
+    void markedWorkThatWritesUsesTheAuthPool() {
+        when(lagMonitor.isReplicaUsable()).thenReturn(true);
+        WorkloadRoutingDataSource.markReplicaRead();
+
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("auth");
+    }
+
+    @Test
+    void nestedMarksRestoreTheOuterState() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(lagMonitor.isReplicaUsable()).thenReturn(true);
+
+        boolean outer = WorkloadRoutingDataSource.markReplicaRead();
+        boolean inner = WorkloadRoutingDataSource.markReplicaRead();
+        WorkloadRoutingDataSource.restoreReplicaRead(inner);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("replica");
+
+        WorkloadRoutingDataSource.restoreReplicaRead(outer);
+        assertThat(routing.determineCurrentLookupKey()).isEqualTo("auth");
+    }
+
+    @Test
+    void withoutReplicaMarkedReadsUseTheReportingPool() {
+        WorkloadRoutingDataSource noReplica = new WorkloadRoutingDataSource(
+            mock(DataSource.class), mock(DataSource.class), null, null);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        WorkloadRoutingDataSource.markReplicaRead();
+
+        assertThat(noReplica.determineCurrentLookupKey()).isEqualTo("reporting");
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.idp.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OAuthClientTest {
+
+    @Test
+    void scopeChecksUseTheRegisteredScopes() {
+        OAuthClient client = OAuthClient.builder().scopes(new ArrayList<>(List.of("read", "orders:mask"))).build();
+
+        assertThat(client.hasScopeAccess("read")).isTrue();
+        assertThat(client.hasScopeAccess("orders:mask")).isTrue();
+        assertThat(client.hasScopeAccess("write")).isFalse();
+        assertThat(client.hasScopeAccess("never-registered")).isFalse();
+    }
+
+    @Test
+    void replacingScopesResetsTheMask() {
+        OAuthClient client = OAuthClient.builder().scopes(new ArrayList<>(List.of("read"))).build();
+        assertThat(client.hasScopeAccess("read")).isTrue();
+
+        client.setScopes(List.of("write"));
+
+        assertThat(client.hasScopeAccess("read")).isFalse();
+        assertThat(client.hasScopeAccess("write")).isTrue();
+    }
+
+    @Test
+    void clientWithoutScopesHasNone() {
+        assertThat(OAuthClient.builder().build().hasScopeAccess("read")).isFalse();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.idp.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserTest {
+
+    @Test
+    void roleMaskIsBuiltFromLoadedRoles() {
+        User user = User.builder()
+            .roles(new HashSet<>(Set.of(UserRole.builder().role(UserRole.TEACHER).build())))
+            .build();
+
+        assertThat(user.hasRole(UserRole.TEACHER)).isTrue();
+        assertThat(user.hasRole(UserRole.ADMIN)).isFalse();
+        assertThat(user.hasRole(null)).isFalse();
+    }
+
+    @Test
+    void addedRolesAreSeenOnceTheMaskIsBuilt() {
+        User user = User.builder().email("mask@example.com").build();
+        assertThat(user.hasRole(UserRole.USER)).isFalse();
+
+        user.addRole(UserRole.builder().role(UserRole.USER).build());
+        user.addRole(UserRole.builder().role("ROLE_ONLY_IN_USER_TEST").build());
+
+        assertThat(user.hasRole(UserRole.USER)).isTrue();
+        assertThat(user.hasRole("ROLE_ONLY_IN_USER_TEST")).isTrue();
+        assertThat(user.hasRole(UserRole.ADMIN)).isFalse();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.idp.oauth2;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CookieAuthorizationRequestRepositoryTest {
+
+    private static final String SECRET = "shared-cookie-secret";
+
+    @Test
+    void requestSavedOnOneNodeLoadsOnAnotherWithTheSameSecret() throws Exception {
+        String cookie = save(repository(SECRET, 180), "state-1");
+
+        OAuth2AuthorizationRequest loaded = repository(SECRET, 180).loadAuthorizationRequest(callback(cookie, "state-1"));
+
+        assertThat(loaded).isNotNull();
+        assertThat(loaded.getState()).isEqualTo("state-1");
+        assertThat(loaded.getClientId()).isEqualTo("google-client");
+        assertThat(loaded.getScopes()).containsExactlyInAnyOrder("openid", "email");
+        assertThat(loaded.getAttributes()).containsEntry("registration_id", "google");
+    }
+
+    @Test
+    void cookieIsOpaque() throws Exception {
+        String cookie = save(repository(SECRET, 180), "state-1");
+
+        assertThat(cookie).doesNotContain("google-client");
+        // A fresh IV per cookie: the same request never encrypts to the same value
+        assertThat(save(repository(SECRET, 180), "state-1")).isNotEqualTo(cookie);
+    }
+
+    @Test
+    void tamperedOrForeignCookieIsRejected() throws Exception {
+        CookieAuthorizationRequestRepository repository = repository(SECRET, 180);
+        String cookie = save(repository, "state-1");
+        char last = cookie.charAt(cookie.length() - 2);
+        String tampered = cookie.substring(0, cookie.length() - 2) + (last == 'A' ? 'B' : 'A') + cookie.charAt(cookie.length() - 1);
+
+        assertThat(repository.loadAuthorizationRequest(callback(tampered, "state-1"))).isNull();
+        assertThat(repository.loadAuthorizationRequest(callback("AAAA", "state-1"))).isNull();
+        assertThat(repository(SECRET + "-other", 180).loadAuthorizationRequest(callback(cookie, "state-1"))).isNull();
+    }
+
+    @Test
+    void stateMismatchAndExpiryAreRejected() throws Exception {
+        CookieAuthorizationRequestRepository repository = repository(SECRET, 180);
+        assertThat(repository.loadAuthorizationRequest(callback(save(repository, "state-1"), "state-2"))).isNull();
+
+        CookieAuthorizationRequestRepository expired = repository(SECRET, -1);
+        assertThat(expired.loadAuthorizationRequest(callback(save(expired, "state-1"), "state-1"))).isNull();
+    }
+
+    @Test
+    void removeClearsTheCookie() throws Exception {
+        CookieAuthorizationRequestRepository repository = repository(SECRET, 180);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        OAuth2AuthorizationRequest removed = repository.removeAuthorizationRequest(
+            callback(save(repository, "state-1"), "state-1"), response);
+
+        assertThat(removed).isNotNull();
+        assertThat(response.getHeader(HttpHeaders.SET_COOKIE)).contains("Max-Age=0");
+    }
+
+    private static CookieAuthorizationRequestRepository repository(String secret, long maxAgeSeconds) throws Exception {
+        CookieAuthorizationRequestRepository repository = new CookieAuthorizationRequestRepository(new ObjectMapper());
+        ReflectionTestUtils.setField(repository, "cookieSecret", secret);
+        ReflectionTestUtils.setField(repository, "maxAgeSeconds", maxAgeSeconds);
+        repository.init();
+        return repository;
+    }
+
+    private static String save(CookieAuthorizationRequestRepository repository, String state) {
+        OAuth2AuthorizationRequest request = OAuth2AuthorizationRequest.authorizationCode()
+            .authorizationUri("https://accounts.example.com/authorize")
+            .clientId("google-client")
+            .redirectUri("https://idp.example.com/login/oauth2/code/google")
+            .scopes(Set.of("openid", "email"))
+            .state(state)
+            .attributes(Map.of("registration_id", "google"))
+            .build();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        repository.saveAuthorizationRequest(request, new MockHttpServletRequest(), response);
+
+        String header = response.getHeader(HttpHeaders.SET_COOKIE);
+        assertThat(header).startsWith(CookieAuthorizationRequestRepository.COOKIE_NAME + "=");
+        return header.substring(header.indexOf('=') + 1, header.indexOf(';'));
+    }
+
+    private static MockHttpServletRequest callback(String cookie, String state) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(CookieAuthorizationRequestRepository.COOKIE_NAME, cookie));
+        request.setParameter("state", state);
+        return request;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.idp.oauth2;
+
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.service.ClientChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedirectUriMatcherTest {
+
+    @Test
+    void plainUrisMatchExactlyOnly() {
+        RedirectUriMatcher matcher = matcher("https://app.example.com/callback");
+
+        assertThat(matcher.matches("https://app.example.com/callback")).isTrue();
+        assertThat(matcher.matches("https://app.example.com/callback/")).isFalse();
+        assertThat(matcher.matches("https://app.example.com/callback?x=1")).isFalse();
+        assertThat(matcher.matches("https://app.example.com:8443/callback")).isFalse();
+        assertThat(matcher.matches("https://app.example.com.evil.com/callback")).isFalse();
+        assertThat(matcher.matches(null)).isFalse();
+    }
+
+    @Test
+    void loopbackUriWithoutPortMatchesAnyPort() {
+        RedirectUriMatcher matcher = matcher("http://127.0.0.1/callback", "http://localhost/cb");
+
+        assertThat(matcher.matches("http://127.0.0.1:51004/callback")).isTrue();
+        assertThat(matcher.matches("http://127.0.0.1/callback")).isTrue();
+        assertThat(matcher.matches("http://localhost:3000/cb")).isTrue();
+        assertThat(matcher.matches("http://127.0.0.1:51004/callback/more")).isFalse();
+        assertThat(matcher.matches("https://127.0.0.1:51004/callback")).isFalse();
+        assertThat(matcher.matches("http://127.0.0.1:99999/callback")).isFalse();
+        assertThat(matcher.matches("http://127.0.0.1:80@evil.com/callback")).isFalse();
+    }
+
+    @Test
+    void pathPrefixCannotBeEscapedWithDotSegments() {
+        RedirectUriMatcher matcher = matcher("https://app.example.com/cb/*");
+
+        assertThat(matcher.matches("https://app.example.com/cb/")).isTrue();
+        assertThat(matcher.matches("https://app.example.com/cb/tenant/42")).isTrue();
+        assertThat(matcher.matches("https://app.example.com/cb/../admin")).isFalse();
+        assertThat(matcher.matches("https://app.example.com/cb/./x")).isFalse();
+        assertThat(matcher.matches("https://app.example.com/cbx/")).isFalse();
+        assertThat(matcher.matches("https://app.example.com/cb/x#frag")).isFalse();
+    }
+
+    @Test
+    void hostIsCaseInsensitiveAndPathIsNot() {
+        RedirectUriMatcher matcher = matcher("https://app.example.com/cb/*");
+
+        assertThat(matcher.matches("HTTPS://App.Example.COM/cb/x")).isTrue();
+        assertThat(matcher.matches("https://app.example.com/CB/x")).isFalse();
+        assertThat(matcher("https://app.example.com/callback").matches("https://APP.example.com/callback")).isFalse();
+    }
+
+    @Test
+    void encodedSeparatorsAndDotsAreRejected() {
+        RedirectUriMatcher matcher = matcher("https://app.example.com/cb/*");
+
+        assertThat(matcher.matches("https://app.example.com/cb/%2e%2e/admin")).isFalse();
+        assertThat(matcher.matches("https://app.example.com/cb/%2E%2E/admin")).isFalse();
+        assertThat(matcher.matches("https://app.example.com/cb/..%2fadmin")).isFalse();
+        assertThat(matcher.matches("https://app.example.com/cb/%5cadmin")).isFalse();
+        assertThat(matcher.matches("https://app.example.com/cb/a%20b")).isTrue();
+    }
+
+    @Test
+    void cacheReusesMatcherUntilTheClientChanges() {
+        RedirectUriMatcherCache cache = new RedirectUriMatcherCache();
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        cache.init();
+
+        OAuthClient client = OAuthClient.builder()
+            .clientId("web-app")
+            .redirectUris(new ArrayList<>(List.of("https://app.example.com/callback")))
+            .updatedAt(LocalDateTime.of(2026, 1, 1, 0, 0))
+            .build();
+        RedirectUriMatcher first = cache.forClient(client);
+        assertThat(cache.forClient(client)).isSameAs(first);
+
+        // Replacing the collection alone leaves updated_at as it was; the change event evicts
+        client.setRedirectUris(new ArrayList<>(List.of("https://app.example.com/new")));
+        cache.onClientChanged(new ClientChangedEvent("web-app"));
+        assertThat(cache.matches(client, "https://app.example.com/new")).isTrue();
+        assertThat(cache.matches(client, "https://app.example.com/callback")).isFalse();
+
+        // A newer row loaded after a change on another node recompiles as well
+        client.setRedirectUris(new ArrayList<>(List.of("https://app.example.com/other")));
+        client.setUpdatedAt(LocalDateTime.of(2026, 1, 2, 0, 0));
+        assertThat(cache.matches(client, "https://app.example.com/other")).isTrue();
+    }
+
+    private static RedirectUriMatcher matcher(String... uris) {
+        return RedirectUriMatcher.compile(null, List.of(uris));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.idp.repository;
+
+import com.example.idp.PostgresIntegrationTest;
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.entity.UserRole;
+import com.example.idp.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class SecondLevelCacheTest extends PostgresIntegrationTest {
+
+    private static final String CLIENT_ID = "l2-cache-client";
+    private static final String EMAIL = "l2-cache@example.com";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long userId;
+
+    @BeforeEach
+    void seed() {
+        saveClient(CLIENT_ID, "openid", "profile");
+        userId = saveUser(EMAIL, null, UserRole.USER).getId();
+    }
+
+    @Test
+    void activeClientLookupIsServedFromCache() {
+        loadClient();
+
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        OAuthClient client = loadClient();
+
+        assertThat(client.getScopes()).containsExactly("openid", "profile");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryRegionStatistics(OAuthClientRepository.ACTIVE_BY_CLIENT_ID_REGION).getHitCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics("oauth-client-scopes").getHitCount()).isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics("oauth-client-redirect-uris").getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void clientByIdIsServedFromCache() {
+        Long id = loadClient().getId();
+        transactionTemplate.executeWithoutResult(status -> oauthClientRepository.findById(id).orElseThrow());
+
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        transactionTemplate.executeWithoutResult(status -> oauthClientRepository.findById(id).orElseThrow());
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics("oauth-clients").getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void clientUpdateInvalidatesCachedLookup() {
+        loadClient();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            OAuthClient client = oauthClientRepository.findByClientId(CLIENT_ID).orElseThrow();
+            client.setScopes(new ArrayList<>(List.of("openid", "profile", "email")));
+            oauthClientRepository.save(client);
+        });
+
+        assertThat(loadClient().getScopes()).containsExactly("openid", "profile", "email");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            OAuthClient client = oauthClientRepository.findByClientId(CLIENT_ID).orElseThrow();
+            client.setIsActive(false);
+            oauthClientRepository.save(client);
+        });
+
+        assertThat(oauthClientRepository.findByClientIdAndIsActiveTrue(CLIENT_ID)).isEmpty();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            OAuthClient client = oauthClientRepository.findByClientId(CLIENT_ID).orElseThrow();
+            client.setIsActive(true);
+            client.setScopes(new ArrayList<>(List.of("openid", "profile")));
+            oauthClientRepository.save(client);
+        });
+    }
+
+    @Test
+    void roleNamesAreCachedUntilRolesChange() {
+        userRoleRepository.findRoleNamesByUserId(userId);
+
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        assertThat(userRoleRepository.findRoleNamesByUserId(userId)).containsExactly(UserRole.USER);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryRegionStatistics(UserRoleRepository.ROLE_NAMES_REGION).getHitCount()).isEqualTo(1);
+
+        userService.addRoleToUser(userId, UserRole.TEACHER);
+        try {
+            assertThat(userRoleRepository.findRoleNamesByUserId(userId))
+                .containsExactlyInAnyOrder(UserRole.USER, UserRole.TEACHER);
+        } finally {
+            userService.removeRoleFromUser(userId, UserRole.TEACHER);
+        }
+        assertThat(userRoleRepository.findRoleNamesByUserId(userId)).containsExactly(UserRole.USER);
+    }
+
+    // Lookup plus collection access, the way the token endpoint uses a client
+    private OAuthClient loadClient() {
+        return transactionTemplate.execute(status -> {
+            OAuthClient client = oauthClientRepository.findByClientIdAndIsActiveTrue(CLIENT_ID).orElseThrow();
+            client.getScopes().size();
+            client.getRedirectUris().size();
+            return client;
+        });
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
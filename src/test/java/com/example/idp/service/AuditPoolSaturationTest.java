@@ -0,0 +1,131 @@
+package com.example.idp.service;
+
+import com.example.idp.PostgresIntegrationTest;
+import com.example.idp.entity.UserRole;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+    "spring.datasource.audit.hikari.maximum-pool-size=2",
+    "spring.datasource.audit.hikari.connection-timeout=250",
+    "audit.flush-interval-ms=3600000"
+})
+class AuditPoolSaturationTest extends PostgresIntegrationTest {
+
+    private static final String EMAIL = "bulkhead@example.com";
+    private static final String PASSWORD = "s3cret-password";
+    private static final String CLIENT_ID = "bulkhead-client";
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private AuditService auditService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("auditDataSource")
+    private DataSource auditDataSource;
+
+    @BeforeEach
+    void seed() {
+        saveClient(CLIENT_ID, "openid", "profile");
+        saveUser(EMAIL, PASSWORD, UserRole.USER);
+    }
+
+    @Test
+    void loginIsAuditedBeforeItReturns() {
+        long auditedBefore = loginAudits();
+
+        assertThat(login().isSuccess()).isTrue();
+
+        assertThat(loginAudits()).isEqualTo(auditedBefore + 1);
+    }
+
+    @Test
+    void loginKeepsWorkingWhileAuditPoolIsSaturated() {
+        assertThat(login().isSuccess()).isTrue();
+        long auditedBefore = loginAudits();
+
+        List<Connection> held = holdAuditPool();
+        try {
+            for (int i = 0; i < 20; i++) {
+                long started = System.nanoTime();
+                assertThat(login().isSuccess()).isTrue();
+                // Bounded by the audit pool's connection timeout, not by the audit backlog
+                assertThat((System.nanoTime() - started) / 1_000_000).isLessThan(1000);
+            }
+            assertThat(loginAudits()).isEqualTo(auditedBefore);
+        } finally {
+            release(held);
+        }
+
+        // Deferred events are written by the batch writer
+        auditService.flush();
+        assertThat(loginAudits()).isEqualTo(auditedBefore + 20);
+    }
+
+    @Test
+    void rejectedEventIsDroppedWithoutHoldingUpTheBatch() {
+        double failedBefore = meterRegistry.get("audit.events.failed").counter().count();
+        List<Connection> held = holdAuditPool();
+        try {
+            auditService.logEvent(null, "POISON_" + "x".repeat(100), "too long for event_type", null, null);
+            auditService.logEvent(null, "AFTER_POISON", "written", null, null);
+        } finally {
+            release(held);
+        }
+
+        auditService.flush();
+
+        assertThat(count("SELECT COUNT(*) FROM audit_logs WHERE event_type = 'AFTER_POISON'")).isEqualTo(1);
+        assertThat(meterRegistry.get("audit.events.failed").counter().count()).isEqualTo(failedBefore + 1);
+        assertThat(meterRegistry.get("audit.events.pending").gauge().value()).isZero();
+    }
+
+    private List<Connection> holdAuditPool() {
+        List<Connection> held = new ArrayList<>();
+        try {
+            held.add(auditDataSource.getConnection());
+            held.add(auditDataSource.getConnection());
+        } catch (SQLException e) {
+            release(held);
+            throw new IllegalStateException(e);
+        }
+        return held;
+    }
+
+    private void release(List<Connection> held) {
+        for (Connection connection : held) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Returned to the pool already
+            }
+        }
+    }
+
+    private AuthenticationService.AuthenticationResult login() {
+        return authenticationService.authenticateUser(EMAIL, PASSWORD, CLIENT_ID, "127.0.0.1", "junit");
+    }
+
+    private long loginAudits() {
+        return count(
+            "SELECT COUNT(*) FROM audit_logs a JOIN users u ON u.id = a.user_id WHERE u.email = ? AND a.event_type = 'LOGIN'",
+            EMAIL);
+    }
+}
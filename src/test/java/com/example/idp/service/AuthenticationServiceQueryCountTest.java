@@ -0,0 +1,67 @@
+package com.example.idp.service;
+
+import com.example.idp.PostgresIntegrationTest;
+import com.example.idp.entity.User;
+import com.example.idp.entity.UserRole;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class AuthenticationServiceQueryCountTest extends PostgresIntegrationTest {
+
+    private static final String EMAIL = "login-count@example.com";
+    private static final String PASSWORD = "s3cret-password";
+    private static final String CLIENT_ID = "query-count-client";
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @BeforeEach
+    void seed() {
+        saveClient(CLIENT_ID, "openid", "profile", "email", "roles");
+        saveUser(EMAIL, PASSWORD, UserRole.USER, UserRole.ADMIN);
+    }
+
+    @Test
+    void successfulLoginUsesFixedNumberOfStatements() {
+        // Warm the per-client claim profile and the credential near-cache
+        assertThat(login().isSuccess()).isTrue();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        AuthenticationService.AuthenticationResult result = login();
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getUser().getEmail()).isEqualTo(EMAIL);
+        assertThat(jwtService.validateAccessToken(result.getAccessToken()).get("roles"))
+            .isEqualTo(List.of(UserRole.ADMIN, UserRole.USER));
+
+        // lockout count, login attempt insert and refresh token insert; credentials come from
+        // UserCredentialCache, the client from the second-level cache, and last login and the
+        // audit event are written behind on the batch pool
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityStatistics(User.class.getName()).getLoadCount()).isZero();
+        assertThat(statistics.getEntityStatistics(UserRole.class.getName()).getLoadCount()).isZero();
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+
+    private AuthenticationService.AuthenticationResult login() {
+        return authenticationService.authenticateUser(EMAIL, PASSWORD, CLIENT_ID, "127.0.0.1", "junit");
+    }
+}
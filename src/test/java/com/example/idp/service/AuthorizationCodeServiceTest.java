@@ -0,0 +1,143 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.entity.User;
+import com.example.idp.oauth2.AuthorizationCode;
+import com.example.idp.oauth2.InMemoryAuthorizationCodeStore;
+import com.example.idp.oauth2.RedirectUriMatcherCache;
+import com.example.idp.repository.OAuthClientRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthorizationCodeServiceTest {
+
+    private static final String REDIRECT_URI = "https://app.example.com/callback";
+    private static final String VERIFIER = "dBjftJeZ4CVP-mB92K27uhbUJU1p1r_wW1gFWFOEjXk";
+
+    private final OAuthClientRepository oauthClientRepository = mock(OAuthClientRepository.class);
+    private final AuthenticationService authenticationService = mock(AuthenticationService.class);
+    private final UserService userService = mock(UserService.class);
+    private final JwtService jwtService = mock(JwtService.class);
+
+    private InMemoryAuthorizationCodeStore codeStore;
+    private AuthorizationCodeService authorizationCodeService;
+
+    @BeforeEach
+    void setUp() {
+        codeStore = new InMemoryAuthorizationCodeStore();
+        ReflectionTestUtils.setField(codeStore, "initialShardCapacity", 16);
+        codeStore.init();
+
+        authorizationCodeService = new AuthorizationCodeService(
+            codeStore, oauthClientRepository, new RedirectUriMatcherCache(), authenticationService, userService, jwtService);
+        ReflectionTestUtils.setField(authorizationCodeService, "accessTokenExpiration", 900L);
+
+        client("web-app", false);
+        client("spa", true);
+        when(authenticationService.validateClientCredentials(anyString(), anyString())).thenReturn(false);
+        when(authenticationService.validateClientCredentials("web-app", "web-secret")).thenReturn(true);
+        when(userService.findById(1L)).thenReturn(Optional.of(User.builder().id(1L).email("code@example.com").build()));
+        when(jwtService.generateScopedAccessToken(any(User.class), anyString(), anyString())).thenReturn("access-token");
+    }
+
+    @AfterEach
+    void tearDown() {
+        codeStore.shutdown();
+    }
+
+    @Test
+    void confidentialClientCannotSkipAuthenticationByOmittingTheSecret() {
+        assertThat(authorizationCodeService.redeem(code("web-app"), "web-app", null, REDIRECT_URI, VERIFIER).getError())
+            .isEqualTo("invalid_client");
+        assertThat(authorizationCodeService.redeem(code("web-app"), "web-app", "wrong", REDIRECT_URI, VERIFIER).getError())
+            .isEqualTo("invalid_client");
+        assertThat(authorizationCodeService.redeem(code("web-app"), "web-app", "web-secret", REDIRECT_URI, VERIFIER).isSuccess())
+            .isTrue();
+    }
+
+    @Test
+    void publicClientRedeemsWithPkceAlone() {
+        AuthorizationCodeService.TokenResult result =
+            authorizationCodeService.redeem(code("spa"), "spa", null, REDIRECT_URI, VERIFIER);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getAccessToken()).isEqualTo("access-token");
+        assertThat(result.getScope()).isEqualTo("openid");
+    }
+
+    @Test
+    void accessTokenCarriesTheGrantedScopeRatherThanTheClients() {
+        String code = codeStore.save(new AuthorizationCode("spa", 1L, REDIRECT_URI, "read",
+            challenge(VERIFIER), "S256", System.currentTimeMillis() + 60_000));
+
+        assertThat(authorizationCodeService.redeem(code, "spa", null, REDIRECT_URI, VERIFIER).getScope())
+            .isEqualTo("read");
+        verify(jwtService).generateScopedAccessToken(any(User.class), eq("spa"), eq("read"));
+    }
+
+    @Test
+    void redirectUriIsRequiredAndMustMatch() {
+        assertThat(authorizationCodeService.redeem(code("spa"), "spa", null, null, VERIFIER).getError())
+            .isEqualTo("invalid_grant");
+        assertThat(authorizationCodeService.redeem(code("spa"), "spa", null, REDIRECT_URI + "/other", VERIFIER).getError())
+            .isEqualTo("invalid_grant");
+    }
+
+    @Test
+    void wrongOrMalformedVerifierFailsPkce() {
+        String otherVerifier = VERIFIER.substring(1) + "x";
+        assertThat(authorizationCodeService.redeem(code("spa"), "spa", null, REDIRECT_URI, otherVerifier).getError())
+            .isEqualTo("invalid_grant");
+        assertThat(authorizationCodeService.redeem(code("spa"), "spa", null, REDIRECT_URI, "short").getError())
+            .isEqualTo("invalid_grant");
+    }
+
+    @Test
+    void codeIsSingleUseAndBoundToItsClient() {
+        String code = code("spa");
+        assertThat(authorizationCodeService.redeem(code, "web-app", "web-secret", REDIRECT_URI, VERIFIER).getError())
+            .isEqualTo("invalid_grant");
+        // The failed attempt consumed it
+        assertThat(authorizationCodeService.redeem(code, "spa", null, REDIRECT_URI, VERIFIER).getError())
+            .isEqualTo("invalid_grant");
+    }
+
+    private String code(String clientId) {
+        return codeStore.save(new AuthorizationCode(clientId, 1L, REDIRECT_URI, "openid",
+            challenge(VERIFIER), "S256", System.currentTimeMillis() + 60_000));
+    }
+
+    private static String challenge(String verifier) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(verifier.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void client(String clientId, boolean publicClient) {
+        OAuthClient client = OAuthClient.builder()
+            .clientId(clientId)
+            .clientSecretHash("hash")
+            .clientName(clientId)
+            .publicClient(publicClient)
+            .build();
+        when(oauthClientRepository.findByClientIdAndIsActiveTrue(clientId)).thenReturn(Optional.of(client));
+    }
+}
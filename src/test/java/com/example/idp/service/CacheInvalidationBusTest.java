@@ -0,0 +1,65 @@
+package com.example.idp.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// Message handling only; the listener thread is not started
+class CacheInvalidationBusTest {
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final CacheInvalidationBus bus = bus("idp_cache_invalidation");
+
+    @Test
+    void userMessageFromAnotherNodeIsRepublished() {
+        bus.apply("othernod:u:42");
+
+        verify(eventPublisher).publishEvent(new UserChangedEvent(42L));
+    }
+
+    @Test
+    void clientIdMayContainTheSeparator() {
+        bus.apply("othernod:c:app:with:colons");
+
+        verify(eventPublisher).publishEvent(new ClientChangedEvent("app:with:colons"));
+    }
+
+    @Test
+    void ownMessagesAreIgnored() {
+        String nodeId = (String) ReflectionTestUtils.getField(bus, "nodeId");
+
+        bus.apply(nodeId + ":u:42");
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void malformedOrUnknownMessagesAreIgnored() {
+        bus.apply(null);
+        bus.apply("");
+        bus.apply("othernod:u");
+        bus.apply("othernod:x:42");
+        bus.apply("othernod:u:not-a-number");
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void channelMustBeAPlainIdentifier() {
+        assertThatThrownBy(() -> bus("idp; DROP TABLE users"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private CacheInvalidationBus bus(String channel) {
+        return new CacheInvalidationBus(mock(JdbcTemplate.class), new DataSourceProperties(), eventPublisher,
+            channel, 1000, 30000, 2000);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.idp.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The chunk loop on its own; DataPurgeServiceTest runs the statements against Postgres
+class DataPurgeServiceChunkTest {
+
+    private static final String REFRESH_TOKENS = "DELETE FROM refresh_tokens";
+    private static final String LOGIN_ATTEMPTS = "DELETE FROM login_attempts";
+    private static final String AUDIT_LOGS = "DELETE FROM audit_logs";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PurgeThrottle throttle = mock(PurgeThrottle.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DataPurgeService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DataPurgeService(mock(DataSource.class), throttle, meterRegistry, 1, 30, 365);
+        ReflectionTestUtils.setField(service, "batchJdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "chunkSize", 1000);
+        ReflectionTestUtils.setField(service, "pauseMs", 0L);
+        ReflectionTestUtils.setField(service, "maxChunksPerRun", 100);
+    }
+
+    @Test
+    void fullChunksRepeatUntilAShortOne() throws Exception {
+        when(deleteChunk(jdbcTemplate, REFRESH_TOKENS)).thenReturn(1000, 1000, 5);
+        when(deleteChunk(jdbcTemplate, LOGIN_ATTEMPTS)).thenReturn(0);
+        when(deleteChunk(jdbcTemplate, AUDIT_LOGS)).thenReturn(1000, 0);
+
+        assertThat(service.purge()).isTrue();
+
+        deleteChunk(verify(jdbcTemplate, times(3)), REFRESH_TOKENS);
+        deleteChunk(verify(jdbcTemplate, times(1)), LOGIN_ATTEMPTS);
+        deleteChunk(verify(jdbcTemplate, times(2)), AUDIT_LOGS);
+        assertThat(deleted("refresh_tokens")).isEqualTo(2005);
+        assertThat(deleted("audit_logs")).isEqualTo(1000);
+    }
+
+    @Test
+    void throttleStopsTheRunBeforeTheNextChunk() throws Exception {
+        when(deleteChunk(jdbcTemplate, REFRESH_TOKENS)).thenReturn(1000);
+        when(throttle.reason()).thenReturn(null, "pool-pressure");
+
+        assertThat(service.purge()).isFalse();
+
+        deleteChunk(verify(jdbcTemplate, times(1)), REFRESH_TOKENS);
+        deleteChunk(verify(jdbcTemplate, times(0)), LOGIN_ATTEMPTS);
+        assertThat(meterRegistry.get("purge.throttled").tag("reason", "pool-pressure").counter().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    void chunkLimitIsSharedAcrossTables() throws Exception {
+        ReflectionTestUtils.setField(service, "maxChunksPerRun", 3);
+        when(deleteChunk(jdbcTemplate, REFRESH_TOKENS)).thenReturn(1000, 0);
+        when(deleteChunk(jdbcTemplate, LOGIN_ATTEMPTS)).thenReturn(1000);
+
+        assertThat(service.purge()).isFalse();
+
+        deleteChunk(verify(jdbcTemplate, times(2)), REFRESH_TOKENS);
+        deleteChunk(verify(jdbcTemplate, times(1)), LOGIN_ATTEMPTS);
+        deleteChunk(verify(jdbcTemplate, times(0)), AUDIT_LOGS);
+    }
+
+    // Matches update(sql, cutoff..., limit) however many times the condition binds the cutoff
+    private static int deleteChunk(JdbcTemplate target, String statement) {
+        return target.update(startsWith(statement), any(Object[].class));
+    }
+
+    private double deleted(String table) {
+        return meterRegistry.get("purge.rows.deleted").tag("table", table).counter().count();
+    }
+}
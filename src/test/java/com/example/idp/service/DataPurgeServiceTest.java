@@ -0,0 +1,84 @@
+package com.example.idp.service;
+
+import com.example.idp.PostgresIntegrationTest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+    "purge.initial-delay-ms=3600000",
+    "purge.chunk-size=1000",
+    "purge.pause-ms=0",
+    "purge.login-attempts.retention-days=30"
+})
+class DataPurgeServiceTest extends PostgresIntegrationTest {
+
+    private static final String EMAIL = "purge@example.com";
+
+    @Autowired
+    private DataPurgeService dataPurgeService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void oldLoginAttemptsAreDeletedInChunks() throws Exception {
+        // Meters are shared with the other tests' purge runs
+        double deletedBefore = deleted("login_attempts");
+        long chunksBefore = chunks("login_attempts");
+        insertAttempts(2500, 40);
+        insertAttempts(10, 1);
+
+        assertThat(dataPurgeService.purge()).isTrue();
+
+        assertThat(count("SELECT COUNT(*) FROM login_attempts WHERE email = ?", EMAIL)).isEqualTo(10);
+        assertThat(deleted("login_attempts") - deletedBefore).isEqualTo(2500);
+        // Two full chunks and the remainder
+        assertThat(chunks("login_attempts") - chunksBefore).isEqualTo(3);
+    }
+
+    @Test
+    void expiredAndOldRevokedRefreshTokensAreDeleted() throws Exception {
+        saveClient("purge-app");
+        Long userId = saveUser("purge-tokens@example.com", "password").getId();
+        insertToken("expired", userId, -1, false, 3);
+        insertToken("revoked-old", userId, 30, true, 3);
+        insertToken("revoked-new", userId, 30, true, 0);
+        insertToken("live-old", userId, 30, false, 3);
+
+        assertThat(dataPurgeService.purge()).isTrue();
+
+        assertThat(jdbcTemplate.queryForList(
+            "SELECT token_hash FROM refresh_tokens WHERE user_id = ? ORDER BY token_hash", String.class, userId))
+            .containsExactly("live-old", "revoked-new");
+    }
+
+    private double deleted(String table) {
+        return meterRegistry.find("purge.rows.deleted").tag("table", table).counters().stream()
+            .mapToDouble(Counter::count).sum();
+    }
+
+    private long chunks(String table) {
+        return meterRegistry.find("purge.chunk").tag("table", table).timers().stream()
+            .mapToLong(Timer::count).sum();
+    }
+
+    private void insertToken(String hash, Long userId, int expiresInDays, boolean revoked, int createdDaysAgo) {
+        jdbcTemplate.update(
+            "INSERT INTO refresh_tokens (token_hash, user_id, client_id, expires_at, is_revoked, created_at)"
+            + " VALUES (?, ?, 'purge-app', now() + make_interval(days => ?), ?, now() - make_interval(days => ?))",
+            hash, userId, expiresInDays, revoked, createdDaysAgo);
+    }
+
+    private void insertAttempts(int count, int daysAgo) {
+        jdbcTemplate.update(
+            "INSERT INTO login_attempts (email, success, attempted_at)"
+            + " SELECT ?, false, now() - make_interval(days => ?) FROM generate_series(1, ?)",
+            EMAIL, daysAgo, count);
+    }
+}
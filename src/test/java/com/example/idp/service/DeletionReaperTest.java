@@ -0,0 +1,80 @@
+package com.example.idp.service;
+
+import com.example.idp.PostgresIntegrationTest;
+import com.example.idp.controller.OAuthClientController;
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.entity.UserRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = {
+    "deletion.interval-ms=3600000",
+    "deletion.chunk-size=1000",
+    "deletion.pause-ms=0"
+})
+class DeletionReaperTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private DeletionReaper deletionReaper;
+
+    @Autowired
+    private OAuthClientController oauthClientController;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void deletedClientIsDeactivatedAtOnceAndRemovedWithItsTokens() throws Exception {
+        OAuthClient client = saveClient("popular-client", "openid");
+        Long userId = saveUser("client-user@example.com", null, UserRole.USER).getId();
+        insertTokens(userId, client.getClientId(), 2500);
+
+        assertThat(oauthClientController.deleteClient(client.getClientId()).getStatusCode().is2xxSuccessful()).isTrue();
+
+        assertThat(oauthClientRepository.findByClientIdAndIsActiveTrue(client.getClientId())).isEmpty();
+        assertThat(oauthClientController.getClient(client.getClientId()).getStatusCode().value()).isEqualTo(404);
+
+        assertThat(deletionReaper.reap()).isTrue();
+
+        assertThat(count("SELECT COUNT(*) FROM oauth_clients WHERE client_id = ?", client.getClientId())).isZero();
+        assertThat(count("SELECT COUNT(*) FROM refresh_tokens WHERE client_id = ?", client.getClientId())).isZero();
+        assertThat(count("SELECT COUNT(*) FROM client_scopes WHERE client_id = ?", client.getId())).isZero();
+        assertThat(userRepository.findById(userId)).isPresent();
+    }
+
+    @Test
+    void deletedUserIsDeactivatedAtOnceAndRemovedWithItsDependents() throws Exception {
+        OAuthClient client = saveClient("user-delete-client", "openid");
+        Long userId = saveUser("deleted-user@example.com", null, UserRole.USER).getId();
+        insertTokens(userId, client.getClientId(), 1500);
+        jdbcTemplate.update("INSERT INTO user_identities (provider, subject, user_id, created_at) VALUES ('google', 'g-1', ?, now())", userId);
+        jdbcTemplate.update("INSERT INTO audit_logs (user_id, event_type, created_at) VALUES (?, 'LOGIN', now())", userId);
+
+        assertThat(userService.deleteUser(userId)).isTrue();
+        assertThat(userService.deleteUser(userId)).isFalse();
+
+        // Inactive at once; the reaper woken by the commit may already have removed the row
+        assertThat(count("SELECT COUNT(*) FROM users WHERE id = ? AND is_active", userId)).isZero();
+
+        assertThat(deletionReaper.reap()).isTrue();
+
+        assertThat(userRepository.findById(userId)).isEmpty();
+        assertThat(count("SELECT COUNT(*) FROM refresh_tokens WHERE user_id = ?", userId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM user_roles WHERE user_id = ?", userId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM user_identities WHERE user_id = ?", userId)).isZero();
+        // The audit trail is kept, without the user reference
+        assertThat(count("SELECT COUNT(*) FROM audit_logs WHERE user_id IS NULL AND event_type = 'LOGIN'")).isPositive();
+        assertThat(oauthClientRepository.findByClientIdAndIsActiveTrue(client.getClientId())).isPresent();
+    }
+
+    private void insertTokens(Long userId, String clientId, int count) {
+        jdbcTemplate.update(
+            "INSERT INTO refresh_tokens (token_hash, user_id, client_id, expires_at, is_revoked, created_at)"
+            + " SELECT md5(random()::text || n), ?, ?, now() + interval '7 days', false, now()"
+            + " FROM generate_series(1, ?) AS n",
+            userId, clientId, count);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.User;
+import com.example.idp.oauth2.ClaimProfile;
+import com.example.idp.repository.UserRoleRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JwtServiceTest {
+
+    private JwtService jwtService;
+
+    private final User user = User.builder().id(42L).email("jwt@example.com").emailVerified(true).build();
+
+    @BeforeEach
+    void setUp() {
+        ClaimProfileService claimProfileService = mock(ClaimProfileService.class);
+        when(claimProfileService.profileFor(any())).thenReturn(ClaimProfile.FULL);
+
+        jwtService = new JwtService(mock(UserRoleRepository.class), claimProfileService);
+        ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", 900L);
+        ReflectionTestUtils.setField(jwtService, "issuer", "idp-test");
+        ReflectionTestUtils.setField(jwtService, "audience", "idp-test");
+        ReflectionTestUtils.setField(jwtService, "verifiedCacheMaxSize", 100L);
+        jwtService.init();
+    }
+
+    @Test
+    void ownAccessTokenIsAcceptedAndCachedByDigest() {
+        String token = jwtService.generateAccessToken(user, List.of("USER"), "demo-app");
+
+        Claims claims = jwtService.validateAccessToken(token);
+        assertThat(claims.getSubject()).isEqualTo("42");
+        assertThat(claims.getAudience()).isEqualTo("idp-test");
+        assertThat(jwtService.validateAccessToken(token)).isSameAs(claims);
+
+        Cache<String, Claims> cache = verifiedCache();
+        assertThat(cache.asMap()).hasSize(1);
+        assertThat(cache.asMap().keySet()).noneMatch(key -> key.equals(token) || token.contains(key));
+    }
+
+    @Test
+    void exchangedTokenForAnotherAudienceIsRejected() {
+        Claims subject = jwtService.validateAccessToken(jwtService.generateAccessToken(user, List.of("USER"), "demo-app"));
+        String exchanged = jwtService.generateExchangedToken(subject, "orders-api", "openid", "demo-app",
+            true, new Date(System.currentTimeMillis() + 60_000));
+
+        assertThatThrownBy(() -> jwtService.validateAccessToken(exchanged))
+            .hasMessageContaining("audience");
+        assertThat(verifiedCache().asMap()).hasSize(1);
+    }
+
+    @Test
+    void tokenFromAnotherIssuerIsRejected() {
+        String token = jwtService.generateAccessToken(user, List.of("USER"), "demo-app");
+        ReflectionTestUtils.setField(jwtService, "issuer", "other-idp");
+
+        assertThatThrownBy(() -> jwtService.validateAccessToken(token))
+            .hasMessageContaining("issuer");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<String, Claims> verifiedCache() {
+        return (Cache<String, Claims>) ReflectionTestUtils.getField(jwtService, "verifiedAccessTokens");
+    }
+}
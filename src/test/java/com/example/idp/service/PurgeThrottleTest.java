@@ -0,0 +1,66 @@
+package com.example.idp.service;
+
+import com.example.idp.config.ReplicaLagMonitor;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PurgeThrottleTest {
+
+    private final HikariDataSource authDataSource = mock(HikariDataSource.class);
+    private final HikariDataSource batchDataSource = mock(HikariDataSource.class);
+    private final HikariPoolMXBean authPool = mock(HikariPoolMXBean.class);
+    private final HikariPoolMXBean batchPool = mock(HikariPoolMXBean.class);
+    private final ReplicaLagMonitor lagMonitor = mock(ReplicaLagMonitor.class);
+
+    @SuppressWarnings("unchecked")
+    private final ObjectProvider<ReplicaLagMonitor> lagMonitorProvider = mock(ObjectProvider.class);
+
+    private final PurgeThrottle throttle = new PurgeThrottle(authDataSource, batchDataSource, lagMonitorProvider);
+
+    @BeforeEach
+    void setUp() {
+        when(authDataSource.getHikariPoolMXBean()).thenReturn(authPool);
+        when(batchDataSource.getHikariPoolMXBean()).thenReturn(batchPool);
+    }
+
+    @Test
+    void goesAheadWithoutReplicaOrWaiters() {
+        assertThat(throttle.reason()).isNull();
+    }
+
+    @Test
+    void waitsWhileTheReplicaLags() {
+        when(lagMonitorProvider.getIfAvailable()).thenReturn(lagMonitor);
+
+        when(lagMonitor.isReplicaUsable()).thenReturn(true);
+        assertThat(throttle.reason()).isNull();
+
+        when(lagMonitor.isReplicaUsable()).thenReturn(false);
+        assertThat(throttle.reason()).isEqualTo("replica-lag");
+    }
+
+    @Test
+    void waitsWhileEitherPoolHasWaiters() {
+        when(authPool.getThreadsAwaitingConnection()).thenReturn(1);
+        assertThat(throttle.reason()).isEqualTo("pool-pressure");
+
+        when(authPool.getThreadsAwaitingConnection()).thenReturn(0);
+        when(batchPool.getThreadsAwaitingConnection()).thenReturn(2);
+        assertThat(throttle.reason()).isEqualTo("pool-pressure");
+    }
+
+    @Test
+    void poolThatHasNotStartedHasNoWaiters() {
+        when(authDataSource.getHikariPoolMXBean()).thenReturn(null);
+        when(batchDataSource.getHikariPoolMXBean()).thenReturn(null);
+
+        assertThat(throttle.reason()).isNull();
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.idp.service;
+
+import com.example.idp.PostgresIntegrationTest;
+import com.example.idp.entity.User;
+import com.example.idp.upstream.ProviderIdentity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Deleted users must stay in place until the test has looked at them
+@TestPropertySource(properties = "deletion.interval-ms=3600000")
+class SocialUserProvisioningTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void firstLoginCreatesUserIdentityAndDefaultRole() {
+        User user = userService.registerGoogleOAuthUser("New.User@example.com", "New User", "g-new", "https://pic/new");
+
+        assertThat(user.getId()).isNotNull();
+        assertThat(user.getEmail()).isEqualTo("new.user@example.com");
+        assertThat(user.getFirstName()).isEqualTo("New");
+        assertThat(user.getLastName()).isEqualTo("User");
+        assertThat(user.getEmailVerified()).isTrue();
+        assertThat(userRepository.findByIdentity("google", "g-new")).map(User::getId).contains(user.getId());
+        assertThat(roles(user.getId())).containsExactly("USER");
+    }
+
+    @Test
+    void returningLoginFindsTheLinkedUserEvenAfterAnEmailChange() {
+        User first = userService.registerGoogleOAuthUser("before@example.com", "Re Turning", "g-returning", null);
+
+        User again = userService.registerGoogleOAuthUser("after@example.com", "Other Name", "g-returning", null);
+
+        assertThat(again.getId()).isEqualTo(first.getId());
+        assertThat(again.getEmail()).isEqualTo("before@example.com");
+        assertThat(again.getFirstName()).isEqualTo("Re");
+        assertThat(count("SELECT COUNT(*) FROM users WHERE email = 'after@example.com'")).isZero();
+        assertThat(roles(first.getId())).containsExactly("USER");
+    }
+
+    @Test
+    void firstLoginLinksAnExistingAccountByEmail() {
+        User local = saveUser("local@example.com", "local-password");
+
+        User linked = userService.registerGoogleOAuthUser("Local@Example.com", "Someone Else", "g-local", "https://pic/local");
+
+        assertThat(linked.getId()).isEqualTo(local.getId());
+        assertThat(linked.getPasswordHash()).isEqualTo(local.getPasswordHash());
+        // Names are only set for new users
+        assertThat(linked.getFirstName()).isEqualTo(local.getFirstName());
+        // A missing picture is filled in from the provider
+        assertThat(linked.getProfilePictureUrl()).isEqualTo("https://pic/local");
+        assertThat(userRepository.findByIdentity("google", "g-local")).map(User::getId).contains(local.getId());
+        assertThat(roles(local.getId())).containsExactly("USER");
+    }
+
+    @Test
+    void concurrentFirstLoginsConvergeOnOneUser() throws Exception {
+        int logins = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(logins);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<User>> results = new ArrayList<>();
+            for (int i = 0; i < logins; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return userService.registerGoogleOAuthUser("race@example.com", "Race Condition", "g-race", null);
+                }));
+            }
+            start.countDown();
+
+            Long userId = results.get(0).get(10, TimeUnit.SECONDS).getId();
+            for (Future<User> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS).getId()).isEqualTo(userId);
+            }
+            assertThat(count("SELECT COUNT(*) FROM users WHERE email = 'race@example.com'")).isEqualTo(1);
+            assertThat(count("SELECT COUNT(*) FROM user_identities WHERE provider = 'google' AND subject = 'g-race'"))
+                .isEqualTo(1);
+            assertThat(roles(userId)).containsExactly("USER");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void userMarkedDeletedCannotSignInOrBeRecreated() {
+        Long userId = userService.registerGoogleOAuthUser("gone@example.com", "Gone User", "g-gone", null).getId();
+        // As UserService.deleteUser leaves it until DeletionReaper runs
+        jdbcTemplate.update("UPDATE users SET is_active = false, deleted_at = now() WHERE id = ?", userId);
+        jdbcTemplate.update("DELETE FROM user_roles WHERE user_id = ?", userId);
+
+        // Linked identity, the same email under a new identity, and a provider from the registry
+        assertThatThrownBy(() -> userService.registerGoogleOAuthUser("gone@example.com", "Gone User", "g-gone", null))
+            .isInstanceOf(DisabledException.class);
+        assertThatThrownBy(() -> userService.registerLinkedInOAuthUser("gone@example.com", "Gone", "User", "li-gone", null))
+            .isInstanceOf(DisabledException.class);
+        assertThatThrownBy(() -> userService.registerProviderUser("microsoft",
+                new ProviderIdentity("ms-gone", "gone@example.com", true, "Gone", "User", "Gone User", null)))
+            .isInstanceOf(DisabledException.class);
+        // Nor does a changed email at the provider create a new account for the deleted one's identity
+        assertThatThrownBy(() -> userService.registerGoogleOAuthUser("new-gone@example.com", "Gone User", "g-gone", null))
+            .isInstanceOf(DisabledException.class);
+
+        assertThat(count("SELECT COUNT(*) FROM users WHERE email IN ('gone@example.com', 'new-gone@example.com')"))
+            .isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM user_identities WHERE user_id = ?", userId)).isEqualTo(1);
+        assertThat(roles(userId)).isEmpty();
+    }
+
+    @Test
+    void deactivatedUserCannotSignIn() {
+        Long userId = userService.registerGoogleOAuthUser("inactive@example.com", "In Active", "g-inactive", null).getId();
+        jdbcTemplate.update("UPDATE users SET is_active = false WHERE id = ?", userId);
+        jdbcTemplate.update("DELETE FROM user_roles WHERE user_id = ?", userId);
+
+        assertThatThrownBy(() -> userService.registerGoogleOAuthUser("inactive@example.com", "In Active", "g-inactive", null))
+            .isInstanceOf(DisabledException.class);
+        assertThatThrownBy(() -> userService.registerGoogleOAuthUser("inactive@example.com", "In Active", "g-inactive-2", null))
+            .isInstanceOf(DisabledException.class);
+
+        assertThat(roles(userId)).isEmpty();
+        assertThat(count("SELECT COUNT(*) FROM user_identities WHERE user_id = ?", userId)).isEqualTo(1);
+    }
+
+    private List<String> roles(Long userId) {
+        return jdbcTemplate.queryForList("SELECT role FROM user_roles WHERE user_id = ?", String.class, userId);
+    }
+}
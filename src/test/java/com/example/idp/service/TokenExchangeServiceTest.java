@@ -0,0 +1,158 @@
+package com.example.idp.service;
+
+import com.example.idp.entity.OAuthClient;
+import com.example.idp.entity.User;
+import com.example.idp.oauth2.ClaimProfile;
+import com.example.idp.repository.OAuthClientRepository;
+import com.example.idp.repository.UserRoleRepository;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenExchangeServiceTest {
+
+    private static final String GATEWAY = "gateway";
+    private static final String SECRET = "gateway-secret";
+
+    private final OAuthClientRepository oauthClientRepository = mock(OAuthClientRepository.class);
+    private final AuthenticationService authenticationService = mock(AuthenticationService.class);
+    private final ClaimProfileService claimProfileService = mock(ClaimProfileService.class);
+    private final UserInfoService userInfoService = mock(UserInfoService.class);
+
+    private JwtService jwtService;
+    private TokenExchangeService tokenExchangeService;
+    private String subjectToken;
+
+    @BeforeEach
+    void setUp() {
+        when(claimProfileService.profileFor(any())).thenReturn(ClaimProfile.FULL);
+        jwtService = spy(new JwtService(mock(UserRoleRepository.class), claimProfileService));
+        ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", 900L);
+        ReflectionTestUtils.setField(jwtService, "issuer", "idp-test");
+        ReflectionTestUtils.setField(jwtService, "audience", "idp-test");
+        ReflectionTestUtils.setField(jwtService, "verifiedCacheMaxSize", 100L);
+        jwtService.init();
+
+        tokenExchangeService = new TokenExchangeService(
+            jwtService, oauthClientRepository, authenticationService, claimProfileService, userInfoService);
+        ReflectionTestUtils.setField(tokenExchangeService, "exchangedTokenExpiration", 300L);
+        ReflectionTestUtils.setField(tokenExchangeService, "reuseSkewSeconds", 30L);
+        ReflectionTestUtils.setField(tokenExchangeService, "maxCachedTokens", 100);
+        tokenExchangeService.init();
+
+        client("demo-app", "openid", "email", "orders:read");
+        client("orders-api", "openid", "orders:read", "orders:write");
+        when(authenticationService.validateClientCredentials(anyString(), anyString())).thenReturn(false);
+        when(authenticationService.validateClientCredentials(GATEWAY, SECRET)).thenReturn(true);
+        when(userInfoService.isActive(7L)).thenReturn(true);
+
+        User user = User.builder().id(7L).email("subject@example.com").emailVerified(true).build();
+        subjectToken = jwtService.generateAccessToken(user, List.of("USER"), "demo-app");
+    }
+
+    @Test
+    void clientMustAuthenticateBeforeTheSubjectIsLookedAt() {
+        assertThat(exchange(null, null).getError()).isEqualTo("invalid_client");
+        assertThat(exchange("wrong", null).getError()).isEqualTo("invalid_client");
+
+        verify(userInfoService, never()).isActive(any());
+    }
+
+    @Test
+    void issuedScopeIsTheIntersectionOfSubjectAndAudience() {
+        TokenExchangeService.TokenExchangeResult result = exchange(SECRET, null);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getScope()).isEqualTo("openid orders:read");
+        Claims claims = jwtService.validateToken(result.getAccessToken());
+        assertThat(claims.getAudience()).isEqualTo("orders-api");
+        assertThat(claims.get("scope", String.class)).isEqualTo("openid orders:read");
+    }
+
+    @Test
+    void scopeTheSubjectWasNotGrantedIsRejected() {
+        assertThat(exchange(SECRET, "orders:write").getError()).isEqualTo("invalid_scope");
+        assertThat(exchange(SECRET, "email").getError()).isEqualTo("invalid_scope");
+        assertThat(exchange(SECRET, "orders:read").isSuccess()).isTrue();
+    }
+
+    @Test
+    void scopeGrantedOnAnAuthorizationCodeCannotBeWidened() {
+        // demo-app is registered for orders:read, but the user only granted openid
+        User user = User.builder().id(7L).email("subject@example.com").emailVerified(true).build();
+        subjectToken = jwtService.generateScopedAccessToken(user, "demo-app", "openid");
+
+        assertThat(exchange(SECRET, "orders:read").getError()).isEqualTo("invalid_scope");
+        assertThat(exchange(SECRET, null).getScope()).isEqualTo("openid");
+    }
+
+    @Test
+    void rolesOnlyReachAudiencesWhoseProfileIncludesThem() {
+        when(claimProfileService.profileFor("orders-api")).thenReturn(ClaimProfile.forScopes(List.of("email")));
+
+        Claims claims = jwtService.validateToken(exchange(SECRET, null).getAccessToken());
+
+        assertThat(claims.get("roles")).isNull();
+    }
+
+    @Test
+    void repeatedExchangeReusesTokenAndSecretCheckButNotForInactiveSubject() {
+        String first = exchange(SECRET, null).getAccessToken();
+        assertThat(exchange(SECRET, null).getAccessToken()).isEqualTo(first);
+        verify(authenticationService, times(1)).validateClientCredentials(GATEWAY, SECRET);
+
+        when(userInfoService.isActive(7L)).thenReturn(false);
+        assertThat(exchange(SECRET, null).getError()).isEqualTo("invalid_grant");
+    }
+
+    @Test
+    void tokenIsNotReusedWithinTheSkewOfItsExpiry() {
+        ReflectionTestUtils.setField(tokenExchangeService, "reuseSkewSeconds", 300L);
+        tokenExchangeService.init();
+
+        exchange(SECRET, null);
+        exchange(SECRET, null);
+
+        verify(jwtService, times(2)).generateExchangedToken(
+            any(Claims.class), anyString(), anyString(), anyString(), anyBoolean(), any());
+    }
+
+    @Test
+    void exchangedTokenCannotBeExchangedAgain() {
+        String exchanged = exchange(SECRET, null).getAccessToken();
+
+        assertThat(tokenExchangeService.exchange(exchanged, TokenExchangeService.ACCESS_TOKEN_TYPE,
+            GATEWAY, SECRET, "orders-api", null).getError()).isEqualTo("invalid_grant");
+    }
+
+    private TokenExchangeService.TokenExchangeResult exchange(String secret, String scope) {
+        return tokenExchangeService.exchange(subjectToken, TokenExchangeService.ACCESS_TOKEN_TYPE,
+            GATEWAY, secret, "orders-api", scope);
+    }
+
+    private void client(String clientId, String... scopes) {
+        OAuthClient client = OAuthClient.builder()
+            .clientId(clientId)
+            .clientSecretHash("hash")
+            .clientName(clientId)
+            .scopes(new ArrayList<>(List.of(scopes)))
+            .build();
+        when(oauthClientRepository.findByClientIdAndIsActiveTrue(clientId)).thenReturn(Optional.of(client));
+    }
+}
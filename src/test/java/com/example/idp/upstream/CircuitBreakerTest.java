@@ -0,0 +1,116 @@
+package com.example.idp.upstream;
+
+import com.example.idp.upstream.CircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private final List<String> transitions = new ArrayList<>();
+
+    @Test
+    void opensOnceTheFailureRateIsReachedOverTheMinimumCalls() {
+        CircuitBreaker breaker = breaker(60_000);
+
+        call(breaker, false);
+        call(breaker, true);
+        call(breaker, false);
+        // Half of four calls failed, but only once the minimum is reached does it count
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        call(breaker, true);
+
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        assertThat(breaker.retryAfterSeconds()).isBetween(59L, 60L);
+        assertThat(transitions).containsExactly("CLOSED->OPEN");
+    }
+
+    @Test
+    void halfOpenProbesCloseTheCircuitWhenAllSucceed() {
+        CircuitBreaker breaker = opened(0);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        // Only two probes at a time
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+        breaker.onSuccess();
+
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        assertThat(breaker.retryAfterSeconds()).isEqualTo(1);
+        assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED");
+
+        // The window starts afresh: one failure is below the minimum again
+        call(breaker, true);
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void failedProbeReopensTheCircuit() {
+        CircuitBreaker breaker = opened(0);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN");
+    }
+
+    @Test
+    void releaseGivesBackAProbeThatNeverReachedTheProvider() {
+        CircuitBreaker breaker = opened(0);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        breaker.release();
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(State.HALF_OPEN);
+    }
+
+    @Test
+    void releaseWhileClosedLeavesTheWindowAlone() {
+        CircuitBreaker breaker = breaker(60_000);
+        call(breaker, true);
+        call(breaker, true);
+        call(breaker, true);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.release();
+
+        assertThat(breaker.state()).isEqualTo(State.CLOSED);
+        call(breaker, true);
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+    }
+
+    // Window of 4, at least 4 calls, opens at 50% failures, 2 half-open probes
+    private CircuitBreaker breaker(long openMillis) {
+        return new CircuitBreaker(4, 4, 50, openMillis, 2, (from, to) -> transitions.add(from + "->" + to));
+    }
+
+    private CircuitBreaker opened(long openMillis) {
+        CircuitBreaker breaker = breaker(openMillis);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, true);
+        }
+        assertThat(breaker.state()).isEqualTo(State.OPEN);
+        return breaker;
+    }
+
+    private static void call(CircuitBreaker breaker, boolean fails) {
+        assertThat(breaker.tryAcquire()).isTrue();
+        if (fails) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.idp.upstream;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.security.KeyPair;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdTokenVerifierTest {
+
+    private static final String JWKS_URI = "https://accounts.example.com/jwks";
+    private static final String ISSUER = "https://accounts.example.com";
+
+    private final ProviderJwksCache providerJwksCache = mock(ProviderJwksCache.class);
+    private final KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.RS256);
+
+    private IdTokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        when(providerJwksCache.resolve(anyString(), anyString(), anyString())).thenReturn(null);
+        when(providerJwksCache.resolve("google", JWKS_URI, "k1")).thenReturn(keyPair.getPublic());
+
+        verifier = new IdTokenVerifier(providerJwksCache);
+        ReflectionTestUtils.setField(verifier, "clockSkewSeconds", 60L);
+    }
+
+    @Test
+    void validTokenYieldsItsClaims() {
+        Claims claims = verify(token("k1", keyPair.getPrivate(), ISSUER, "idp", 300));
+
+        assertThat(claims.getSubject()).isEqualTo("user-1");
+        assertThat(claims.get("email", String.class)).isEqualTo("user@example.com");
+    }
+
+    @Test
+    void tokenForAnotherAudienceOrIssuerIsRejected() {
+        assertThatThrownBy(() -> verify(token("k1", keyPair.getPrivate(), ISSUER, "other-app", 300)))
+            .hasMessageContaining("Invalid google ID token");
+        assertThatThrownBy(() -> verify(token("k1", keyPair.getPrivate(), "https://evil.example.com", "idp", 300)))
+            .hasMessageContaining("issuer");
+    }
+
+    @Test
+    void unknownKeyOrForeignSignatureIsRejected() {
+        assertThatThrownBy(() -> verify(token("k2", keyPair.getPrivate(), ISSUER, "idp", 300)))
+            .hasMessageContaining("Unknown signing key");
+
+        KeyPair other = Keys.keyPairFor(SignatureAlgorithm.RS256);
+        assertThatThrownBy(() -> verify(token("k1", other.getPrivate(), ISSUER, "idp", 300)))
+            .hasMessageContaining("Invalid google ID token");
+    }
+
+    @Test
+    void onlyRs256IsAccepted() {
+        Key hmacKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+
+        assertThatThrownBy(() -> verify(token("k1", hmacKey, ISSUER, "idp", 300)))
+            .hasMessageContaining("Unexpected ID token algorithm");
+    }
+
+    @Test
+    void expiryIsCheckedWithClockSkew() {
+        assertThat(verify(token("k1", keyPair.getPrivate(), ISSUER, "idp", -30)).getSubject()).isEqualTo("user-1");
+        assertThatThrownBy(() -> verify(token("k1", keyPair.getPrivate(), ISSUER, "idp", -120)))
+            .hasMessageContaining("Invalid google ID token");
+    }
+
+    private Claims verify(String idToken) {
+        return verifier.verify("google", JWKS_URI, idToken, List.of(ISSUER, "accounts.example.com"), "idp");
+    }
+
+    private static String token(String kid, Key signingKey, String issuer, String audience, long expiresInSeconds) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+            .setHeaderParam("kid", kid)
+            .setSubject("user-1")
+            .setIssuer(issuer)
+            .setAudience(audience)
+            .claim("email", "user@example.com")
+            .setIssuedAt(new Date(now - 600_000))
+            .setExpiration(new Date(now + expiresInSeconds * 1000))
+            .signWith(signingKey)
+            .compact();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.idp.upstream;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+
+class UpstreamHttpClientsTest {
+
+    private static final String URI = "https://idp.example.com/token";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void unreadableStatusCountsAsAFailureAndClosesTheResponse() throws IOException {
+        // A single failure is enough to open the circuit
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("upstream.http.circuit.window-size", "1")
+            .withProperty("upstream.http.circuit.minimum-calls", "1");
+        RestTemplate restTemplate = new UpstreamHttpClients(environment, meterRegistry).forProvider("example");
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+
+        ClientHttpResponse broken = mock(ClientHttpResponse.class);
+        when(broken.getStatusCode()).thenThrow(new IOException("connection reset"));
+        server.expect(requestTo(URI)).andRespond(request -> broken);
+
+        assertThatThrownBy(() -> restTemplate.getForObject(URI, String.class))
+            .isInstanceOf(ResourceAccessException.class);
+        verify(broken).close();
+        assertThat(meterRegistry.get("upstream.http.in_flight").gauge().value()).isZero();
+
+        assertThatThrownBy(() -> restTemplate.getForObject(URI, String.class))
+            .isInstanceOf(UpstreamUnavailableException.class);
+        server.verify();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.idp.upstream;
+
+import com.example.idp.repository.OAuthClientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UpstreamProviderRegistryTest {
+
+    private static final String DISCOVERY_URI = "https://okta.example.com/.well-known/openid-configuration";
+
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private UpstreamProviderRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("upstream.providers.okta.issuer-uri", "https://okta.example.com/")
+            .withProperty("upstream.providers.okta.client-id", "okta-client");
+        UpstreamHttpClients upstreamHttpClients = mock(UpstreamHttpClients.class);
+        when(upstreamHttpClients.forProvider("okta")).thenReturn(restTemplate);
+
+        registry = new UpstreamProviderRegistry(environment, upstreamHttpClients, mock(OAuthClientRepository.class));
+        ReflectionTestUtils.setField(registry, "retryAfterSeconds", 60L);
+        ReflectionTestUtils.setField(registry, "maxRetryAfterSeconds", 300L);
+        registry.init();
+    }
+
+    @Test
+    void endpointsAreDiscoveredOnceAndKept() {
+        when(restTemplate.getForObject(DISCOVERY_URI, Map.class)).thenReturn(Map.of(
+            "issuer", "https://okta.example.com",
+            "authorization_endpoint", "https://okta.example.com/authorize",
+            "token_endpoint", "https://okta.example.com/token",
+            "userinfo_endpoint", "https://okta.example.com/userinfo",
+            "jwks_uri", "https://okta.example.com/keys"));
+
+        UpstreamProvider okta = registry.find("okta").orElseThrow();
+        registry.find("okta");
+
+        assertThat(okta.tokenUri()).isEqualTo("https://okta.example.com/token");
+        assertThat(okta.issuers()).containsExactly("https://okta.example.com/");
+        verify(restTemplate, times(1)).getForObject(anyString(), any());
+    }
+
+    @Test
+    void failedDiscoveryIsNotRetriedUntilTheBackoffPasses() {
+        when(restTemplate.getForObject(DISCOVERY_URI, Map.class)).thenThrow(new ResourceAccessException("timed out"));
+
+        assertThatThrownBy(() -> registry.find("okta")).isInstanceOf(ResourceAccessException.class);
+        assertThatThrownBy(() -> registry.find("okta"))
+            .isInstanceOf(UpstreamUnavailableException.class)
+            .satisfies(e -> assertThat(((UpstreamUnavailableException) e).getRetryAfterSeconds()).isBetween(1L, 60L));
+
+        verify(restTemplate, times(1)).getForObject(anyString(), any());
+    }
+
+    @Test
+    void unknownProviderIsNotFound() {
+        assertThat(registry.find("nope")).isEmpty();
+        assertThat(registry.find(null)).isEmpty();
+    }
+}
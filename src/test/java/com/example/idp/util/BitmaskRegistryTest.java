@@ -0,0 +1,76 @@
+package com.example.idp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BitmaskRegistryTest {
+
+    @Test
+    void wellKnownNamesHaveFixedBitsAndOthersAreInternedOnce() {
+        BitmaskRegistry registry = new BitmaskRegistry("ADMIN", "USER");
+
+        assertThat(registry.idOf("ADMIN")).isZero();
+        assertThat(registry.idOf("USER")).isEqualTo(1);
+        assertThat(registry.idOf("AUDITOR")).isEqualTo(-1);
+
+        int auditor = registry.intern("AUDITOR");
+        assertThat(auditor).isEqualTo(2);
+        assertThat(registry.intern("AUDITOR")).isEqualTo(auditor);
+        assertThat(registry.idOf(null)).isEqualTo(-1);
+    }
+
+    @Test
+    void maskChecksMatchTheNamesTheyWereBuiltFrom() {
+        BitmaskRegistry registry = new BitmaskRegistry("ADMIN", "USER", "TEACHER");
+
+        long mask = registry.maskOf(List.of("USER", "TEACHER"));
+
+        assertThat(registry.contains(mask, "USER")).isTrue();
+        assertThat(registry.contains(mask, "TEACHER")).isTrue();
+        assertThat(registry.contains(mask, "ADMIN")).isFalse();
+        // Looked up only, so a name never seen in stored data is simply absent
+        assertThat(registry.contains(mask, "UNKNOWN")).isFalse();
+        assertThat(registry.idOf("UNKNOWN")).isEqualTo(-1);
+        assertThat(registry.namesOf(mask)).containsExactly("USER", "TEACHER");
+        assertThat(registry.maskOf(null)).isZero();
+    }
+
+    @Test
+    void withAndWithoutKeepTheMaskInStep() {
+        BitmaskRegistry registry = new BitmaskRegistry("ADMIN", "USER");
+        Long mask = registry.maskOf(List.of("USER"));
+
+        mask = registry.with(mask, "ADMIN");
+        assertThat(registry.namesOf(mask)).containsExactly("ADMIN", "USER");
+
+        mask = registry.without(mask, "USER");
+        assertThat(registry.namesOf(mask)).containsExactly("ADMIN");
+        assertThat(registry.without(mask, "NEVER_SEEN")).isEqualTo(mask);
+
+        // A mask that was never built stays unbuilt
+        assertThat(registry.with(null, "USER")).isNull();
+        assertThat(registry.without(null, "USER")).isNull();
+    }
+
+    @Test
+    void overflowPastSixtyFourNamesFallsBackToNull() {
+        BitmaskRegistry registry = new BitmaskRegistry();
+        for (int i = 0; i < Long.SIZE; i++) {
+            assertThat(registry.intern("name-" + i)).isEqualTo(i);
+        }
+
+        assertThat(registry.intern("one-too-many")).isEqualTo(-1);
+        assertThat(registry.idOf("one-too-many")).isEqualTo(-1);
+        assertThat(registry.maskOf(List.of("name-0", "one-too-many"))).isNull();
+        assertThat(registry.with(registry.maskOf(List.of("name-0")), "one-too-many")).isNull();
+
+        // Names interned before the overflow still use their bits, including the last one
+        long mask = registry.maskOf(List.of("name-0", "name-63"));
+        assertThat(registry.contains(mask, "name-63")).isTrue();
+        assertThat(registry.contains(mask, "one-too-many")).isFalse();
+        assertThat(registry.namesOf(mask)).containsExactly("name-0", "name-63");
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.idp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpUtilsTest {
+
+    @Test
+    void acceptEncodingHonoursQValues() {
+        assertThat(HttpUtils.acceptsEncoding("gzip, deflate, br", "gzip")).isTrue();
+        assertThat(HttpUtils.acceptsEncoding("GZIP;q=0.5", "gzip")).isTrue();
+        assertThat(HttpUtils.acceptsEncoding("gzip;q=0", "gzip")).isFalse();
+        assertThat(HttpUtils.acceptsEncoding("br, gzip ; q=0.0", "gzip")).isFalse();
+        assertThat(HttpUtils.acceptsEncoding("*", "gzip")).isTrue();
+        assertThat(HttpUtils.acceptsEncoding("*;q=0", "gzip")).isFalse();
+        assertThat(HttpUtils.acceptsEncoding("gzip;q=1, *;q=0", "gzip")).isTrue();
+        assertThat(HttpUtils.acceptsEncoding("x-gzipped", "gzip")).isFalse();
+        assertThat(HttpUtils.acceptsEncoding("identity", "gzip")).isFalse();
+        assertThat(HttpUtils.acceptsEncoding(null, "gzip")).isFalse();
+    }
+}